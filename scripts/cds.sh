@@ -0,0 +1,75 @@
+#!/bin/sh
+# Class data sharing archive for the packaged app (JDK 17+). Build first with
+#   mvn -Paot -DskipTests package
+# then
+#   scripts/cds.sh train [app args]   unpacks the jar to target/cds and records target/cds/app.jsa
+#   scripts/cds.sh run [app args]     starts the app with the archive
+#
+# CDS only maps classes loaded from plain jars by the JDK's class loaders, so the app runs from the
+# unpacked jar rather than with java -jar. The archive is only used with the JDK and class path it
+# was recorded with: train again after every build.
+set -eu
+
+cd "$(dirname "$0")/.."
+DIR=target/cds
+MAIN=com.klimmenkov.testtask.TestTaskApplication
+PORT=${CDS_TRAIN_PORT:-18080}
+# The AOT build is made for the prod profile
+export SPRING_PROFILES_ACTIVE="${SPRING_PROFILES_ACTIVE:-prod}"
+JAVA_OPTS="${JAVA_OPTS:--Dspring.aot.enabled=true}"
+
+extract() {
+    jar_file=$(ls target/*.jar | grep -v '\.original$' | head -n 1)
+    rm -rf "$DIR"
+    mkdir -p "$DIR"
+    (cd "$DIR" && jar -xf "../../$jar_file")
+    # Sorted, so the class path is the same on every run
+    {
+        printf -- '-cp BOOT-INF/classes'
+        for lib in $(ls "$DIR/BOOT-INF/lib" | sort); do
+            printf ':BOOT-INF/lib/%s' "$lib"
+        done
+        echo
+    } > "$DIR/classpath.args"
+}
+
+train() {
+    extract
+    cd "$DIR"
+    # shellcheck disable=SC2086
+    java -XX:ArchiveClassesAtExit=app.jsa $JAVA_OPTS @classpath.args "$MAIN" --server.port="$PORT" "$@" &
+    pid=$!
+    # The first successful request loads the classes a request needs as well
+    until curl -sf "http://localhost:$PORT/users/changes?limit=1" > /dev/null; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "The training run exited before answering a request" >&2
+            exit 1
+        fi
+        sleep 1
+    done
+    # The archive is written while the JVM exits
+    kill -TERM "$pid"
+    wait "$pid" || true
+    echo "Wrote $DIR/app.jsa"
+}
+
+run() {
+    if [ ! -f "$DIR/app.jsa" ]; then
+        echo "No archive in $DIR, run scripts/cds.sh train first" >&2
+        exit 1
+    fi
+    cd "$DIR"
+    # shellcheck disable=SC2086
+    exec java -XX:SharedArchiveFile=app.jsa $JAVA_OPTS @classpath.args "$MAIN" "$@"
+}
+
+command=${1:-}
+[ $# -gt 0 ] && shift
+case "$command" in
+    train) train "$@" ;;
+    run) run "$@" ;;
+    *)
+        echo "Usage: $0 train|run [app args]" >&2
+        exit 2
+        ;;
+esac
@@ -0,0 +1,33 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Mappers configured like the ones behind the HTTP message converters (see BinaryFormatConfig)
+final class BenchmarkCodecs {
+
+    private BenchmarkCodecs() {
+    }
+
+    static ObjectMapper mapper(String format) {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        switch (format) {
+            case "json":
+                return builder.build();
+            case "smile":
+                return builder.factory(new SmileFactory())
+                        .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build();
+            case "cbor":
+                return builder.factory(new CBORFactory())
+                        .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+}
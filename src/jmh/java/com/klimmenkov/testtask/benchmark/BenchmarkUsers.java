@@ -0,0 +1,60 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.klimmenkov.testtask.model.User;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+final class BenchmarkUsers {
+
+    static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1970, 1, 1);
+
+    static final int BIRTH_DATE_SPREAD_DAYS = 35 * 365;
+
+    static final String[] FIRST_NAMES = {"Maria", "Anna", "Olena", "Iryna", "Natalia", "Tetiana", "Sofia", "Julia",
+            "Kateryna", "Oksana", "Mary", "Jane", "Emma", "Olivia", "Ava", "Mia", "Petr", "Ivan", "Oleksandr",
+            "Andrii", "Dmytro", "Serhii", "Mykola", "Taras", "John", "James", "Robert", "Michael", "David", "Daniel",
+            "Mark", "Martin", "Thomas", "Paul", "Peter", "Jose", "Luis", "Carlos", "Ali", "Chen"};
+
+    static final String[] LAST_NAMES = {"Kovalenko", "Bondarenko", "Tkachenko", "Kravchenko", "Shevchenko",
+            "Boyko", "Melnyk", "Kovalchuk", "Kulinich", "Klimenko", "Marchenko", "Savchenko", "Rudenko", "Lysenko",
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Martinez", "Lopez",
+            "Wilson", "Anderson", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Thompson", "White", "Harris",
+            "Clark", "Lewis", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Green", "Baker", "Adams",
+            "Nelson", "Hill", "Campbell", "Mitchell", "Roberts"};
+
+    private BenchmarkUsers() {
+    }
+
+    static User user(int i) {
+        return new User("user" + i + "@example.com", "First" + i, "Last" + i, birthDate(i),
+                i + " Main St", "050" + (1_000_000 + i % 9_000_000));
+    }
+
+    // Names drawn from small pools like real ones, emails unique
+    static User namedUser(int i) {
+        String firstName = FIRST_NAMES[i % FIRST_NAMES.length];
+        String lastName = LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length];
+        return new User(firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@example.com", firstName,
+                lastName, birthDate(i), i + " Main St", "050" + (1_000_000 + i % 9_000_000));
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(user(i));
+        }
+        return users;
+    }
+
+    static Date date(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private static Date birthDate(int i) {
+        return date(FIRST_BIRTH_DATE.plusDays(i % BIRTH_DATE_SPREAD_DAYS));
+    }
+}
@@ -0,0 +1,26 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.klimmenkov.testtask.model.User;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+// The PATCH setter UserField replaced: looks up and unlocks a Field for every key. Values must already
+// have the field's type, it has no coercion.
+final class ReflectiveUserPatch {
+
+    private ReflectiveUserPatch() {
+    }
+
+    static void apply(User user, Map<String, Object> updates) {
+        try {
+            for (Map.Entry<String, Object> entry : updates.entrySet()) {
+                Field field = User.class.getDeclaredField(entry.getKey());
+                field.setAccessible(true);
+                field.set(user, entry.getValue());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to update user with ID: " + user.getId(), e);
+        }
+    }
+}
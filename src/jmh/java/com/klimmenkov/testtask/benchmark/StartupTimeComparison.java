@@ -0,0 +1,151 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Time from launching the packaged app to its first successful GET /users/changes (which needs the
+// database), written to target/startup-comparison.json. Every mode runs startup.runs times in a
+// fresh JVM against the same database:
+//   default       java -jar, ddl-auto=update as in application.properties
+//   prod          the prod profile: Flyway migrations, no schema introspection
+//   prod-aot      prod with the AOT initialization built by mvn -Paot
+//   prod-aot-cds  prod-aot started from target/cds with the archive from scripts/cds.sh train
+// Build with mvn -Paot,benchmark -DskipTests package. Settings are system properties: startup.jar,
+// startup.runs, startup.timeout (seconds), startup.modes (comma separated) and startup.args (passed
+// to the app, e.g. --spring.datasource.url=...).
+public final class StartupTimeComparison {
+
+    private static final String MAIN_CLASS = "com.klimmenkov.testtask.TestTaskApplication";
+
+    private static final Path CDS_DIR = Path.of("target", "cds");
+
+    private StartupTimeComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String jarProperty = System.getProperty("startup.jar");
+        Path jar = (jarProperty != null ? Path.of(jarProperty) : findJar()).toAbsolutePath();
+        int runs = Integer.getInteger("startup.runs", 5);
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(Long.getLong("startup.timeout", 120));
+        List<String> modes = Arrays.stream(System.getProperty("startup.modes",
+                        "default,prod,prod-aot,prod-aot-cds").split(","))
+                .map(String::trim)
+                .toList();
+        List<String> appArgs = Arrays.stream(System.getProperty("startup.args", "").split(" "))
+                .filter(arg -> !arg.isBlank())
+                .toList();
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String mode : modes) {
+            if (mode.equals("prod-aot-cds") && !Files.exists(CDS_DIR.resolve("app.jsa"))) {
+                System.out.println("Skipping prod-aot-cds, run scripts/cds.sh train first");
+                continue;
+            }
+            long[] millis = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                millis[run] = timeToFirstRequest(mode, jar, appArgs, timeoutNanos);
+            }
+            Arrays.sort(millis);
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("mode", mode);
+            row.put("runs", runs);
+            row.put("minMillis", millis[0]);
+            row.put("medianMillis", millis[runs / 2]);
+            row.put("maxMillis", millis[runs - 1]);
+            rows.add(row);
+            System.out.printf("%-13s min %6d ms median %6d ms max %6d ms%n", mode, millis[0], millis[runs / 2],
+                    millis[runs - 1]);
+        }
+
+        Path output = Path.of(args.length > 0 ? args[0] : "target/startup-comparison.json");
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), rows);
+    }
+
+    private static long timeToFirstRequest(String mode, Path jar, List<String> appArgs, long timeoutNanos)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        ProcessBuilder builder = new ProcessBuilder(command(mode, jar, port, appArgs))
+                .redirectErrorStream(true)
+                .redirectOutput(Path.of("target", "startup-" + mode + ".log").toAbsolutePath().toFile());
+        if (mode.equals("prod-aot-cds")) {
+            builder.directory(CDS_DIR.toFile());
+        }
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/users/changes?limit=1")).build();
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            while (System.nanoTime() - start < timeoutNanos) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode + " exited with " + process.exitValue()
+                            + ", see target/startup-" + mode + ".log");
+                }
+                try {
+                    if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException(mode + " did not answer within the timeout");
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static List<String> command(String mode, Path jar, int port, List<String> appArgs) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        switch (mode) {
+            case "default" -> command.addAll(List.of("-jar", jar.toString()));
+            case "prod" -> command.addAll(List.of("-jar", jar.toString(), "--spring.profiles.active=prod"));
+            case "prod-aot" -> command.addAll(List.of("-Dspring.aot.enabled=true", "-jar", jar.toString(),
+                    "--spring.profiles.active=prod"));
+            case "prod-aot-cds" -> command.addAll(List.of("-XX:SharedArchiveFile=app.jsa",
+                    "-Dspring.aot.enabled=true", "@classpath.args", MAIN_CLASS, "--spring.profiles.active=prod"));
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+        return command;
+    }
+
+    private static Path findJar() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of("target"))) {
+            return files.filter(file -> file.toString().endsWith(".jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No jar in target, run mvn package first"));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
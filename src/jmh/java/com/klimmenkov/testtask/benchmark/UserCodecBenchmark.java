@@ -0,0 +1,78 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.klimmenkov.testtask.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserCodecBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"100"})
+    private int searchResultSize;
+
+    private ObjectWriter usersWriter;
+
+    private ObjectReader usersReader;
+
+    private List<User> users;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = BenchmarkCodecs.mapper(format);
+        usersWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, User.class));
+        usersReader = mapper.readerForListOf(User.class);
+        users = BenchmarkUsers.users(searchResultSize);
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId((long) i + 1);
+            users.get(i).setVersion(0L);
+        }
+        payload = usersWriter.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return usersWriter.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public List<User> deserialize() throws IOException {
+        return usersReader.readValue(payload);
+    }
+
+    @Benchmark
+    public byte[] serializeGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            usersWriter.writeValue(gzip, users);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.klimmenkov.testtask.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserJsonBenchmark {
+
+    @Param({"100", "1000"})
+    private int searchResultSize;
+
+    private ObjectWriter userWriter;
+
+    private ObjectReader userReader;
+
+    private ObjectWriter usersWriter;
+
+    private ObjectReader usersReader;
+
+    private User user;
+
+    private List<User> users;
+
+    private byte[] userJson;
+
+    private byte[] usersJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Same defaults as the mapper Spring Boot hands to the MVC message converters
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        userWriter = objectMapper.writerFor(User.class);
+        userReader = objectMapper.readerFor(User.class);
+        usersWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, User.class));
+        usersReader = objectMapper.readerForListOf(User.class);
+
+        user = BenchmarkUsers.user(1);
+        user.setId(1L);
+        user.setVersion(0L);
+        users = BenchmarkUsers.users(searchResultSize);
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId((long) i + 1);
+            users.get(i).setVersion(0L);
+        }
+        userJson = userWriter.writeValueAsBytes(user);
+        usersJson = usersWriter.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws IOException {
+        return userWriter.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User deserializeUser() throws IOException {
+        return userReader.readValue(userJson);
+    }
+
+    @Benchmark
+    public byte[] serializeSearchResult() throws IOException {
+        return usersWriter.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public List<User> deserializeSearchResult() throws IOException {
+        return usersReader.readValue(usersJson);
+    }
+}
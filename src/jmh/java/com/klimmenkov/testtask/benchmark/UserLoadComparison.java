@@ -0,0 +1,208 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klimmenkov.testtask.TestTaskApplication;
+import com.klimmenkov.testtask.dto.BatchItemResult;
+import com.klimmenkov.testtask.service.UserService;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput and p99 of GET /users/{userId} with platform and virtual request threads against a
+// slow database, written to target/load-comparison.json. Settings are system properties:
+// load.concurrency (clients, comma separated), load.seconds, load.queryDelay (ms a connection is
+// held per transaction), load.tomcatThreads and load.poolSize.
+public final class UserLoadComparison {
+
+    private static final int SEEDED_USERS = 10_000;
+
+    private static final int WARMUP_SECONDS = 5;
+
+    private UserLoadComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrency = Arrays.stream(System.getProperty("load.concurrency", "100,400,1600").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        int seconds = Integer.getInteger("load.seconds", 20);
+        long queryDelay = Long.getLong("load.queryDelay", 50);
+        int tomcatThreads = Integer.getInteger("load.tomcatThreads", 200);
+        int poolSize = Integer.getInteger("load.poolSize", 400);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            String mode = virtual ? "virtual" : "platform";
+            if (virtual && Runtime.version().feature() < 21) {
+                System.out.println("Skipping virtual threads, they need Java 21 or newer");
+                continue;
+            }
+
+            ConfigurableApplicationContext context = start(virtual, queryDelay, tomcatThreads, poolSize);
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                long[] userIds = seed(context.getBean(UserService.class));
+                for (int clients : concurrency) {
+                    run(port, userIds, clients, WARMUP_SECONDS);
+                    Result result = run(port, userIds, clients, seconds);
+
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("mode", mode);
+                    row.put("concurrency", clients);
+                    row.put("requestsPerSecond", result.requestsPerSecond());
+                    row.put("p50Millis", result.p50Millis());
+                    row.put("p99Millis", result.p99Millis());
+                    row.put("errors", result.errors());
+                    rows.add(row);
+                    System.out.printf("%-8s %5d clients %9.1f req/s p50 %8.1f ms p99 %8.1f ms %6d errors%n", mode,
+                            clients, result.requestsPerSecond(), result.p50Millis(), result.p99Millis(),
+                            result.errors());
+                }
+            } finally {
+                SpringApplication.exit(context);
+            }
+        }
+
+        Path output = Path.of(args.length > 0 ? args[0] : "target/load-comparison.json");
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), rows);
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual, long queryDelay, int tomcatThreads,
+                                                        int poolSize) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(TestTaskApplication.class)
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(slowDatabase(queryDelay)))
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + (virtual ? "virtual" : "platform")
+                                + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                        "--server.tomcat.threads.max=" + tomcatThreads,
+                        "--user.threads.virtual=" + virtual,
+                        "--user.cache.maximumSize=0",
+                        "--logging.level.root=WARN");
+    }
+
+    // Holds every connection for queryDelay before handing it out, like a slow query would
+    private static BeanPostProcessor slowDatabase(long queryDelay) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || queryDelay <= 0) {
+                    return bean;
+                }
+                return new DelegatingDataSource(dataSource) {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        Connection connection = super.getConnection();
+                        try {
+                            Thread.sleep(queryDelay);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return connection;
+                    }
+                };
+            }
+        };
+    }
+
+    private static long[] seed(UserService userService) {
+        return userService.createUsers(BenchmarkUsers.users(SEEDED_USERS)).getItems().stream()
+                .map(BatchItemResult::getId)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private static Result run(int port, long[] userIds, int clients, int seconds) throws InterruptedException {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong errors = new AtomicLong();
+        List<Latencies> latencies = new ArrayList<>(clients);
+        List<Thread> threads = new ArrayList<>(clients);
+
+        for (int i = 0; i < clients; i++) {
+            Latencies clientLatencies = new Latencies();
+            latencies.add(clientLatencies);
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    long userId = userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+                    HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/users/" + userId)).build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                        continue;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    clientLatencies.add(System.nanoTime() - start);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] all = latencies.stream()
+                .flatMapToLong(clientLatencies -> Arrays.stream(clientLatencies.values, 0, clientLatencies.size))
+                .sorted()
+                .toArray();
+        if (all.length == 0) {
+            return new Result(0, 0, 0, errors.get());
+        }
+        return new Result(all.length / (double) seconds, all[all.length / 2] / 1e6,
+                all[(int) (all.length * 0.99)] / 1e6, errors.get());
+    }
+
+    private static class Latencies {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        void add(long latency) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = latency;
+        }
+    }
+
+    private record Result(double requestsPerSecond, double p50Millis, double p99Millis, long errors) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserField;
+import com.klimmenkov.testtask.validator.AgeCutoff;
+import com.klimmenkov.testtask.validator.UserValidator;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserPatchBenchmark {
+
+    private UserValidator userValidator;
+
+    private User user;
+
+    private Map<String, Object> singleFieldUpdate;
+
+    private Map<String, Object> multiFieldUpdate;
+
+    // Same update with a Date, the reflective setter cannot parse "1991-05-17". UserField takes only
+    // JSON values, so applyMultipleFields (which includes the date parsing) is its counterpart.
+    private Map<String, Object> typedMultiFieldUpdate;
+
+    @Setup
+    public void setUp() {
+        userValidator = new UserValidator(Validation.buildDefaultValidatorFactory().getValidator(), new AgeCutoff(18));
+        user = BenchmarkUsers.user(1);
+        singleFieldUpdate = Map.of("firstName", "Jane");
+        multiFieldUpdate = Map.of(
+                "email", "jane.doe@example.com",
+                "firstName", "Jane",
+                "birthDate", "1991-05-17",
+                "phoneNumber", "0501234567");
+        typedMultiFieldUpdate = Map.of(
+                "email", "jane.doe@example.com",
+                "firstName", "Jane",
+                "birthDate", BenchmarkUsers.date(LocalDate.of(1991, 5, 17)),
+                "phoneNumber", "0501234567");
+    }
+
+    @Benchmark
+    public User applySingleFieldReflectively() {
+        ReflectiveUserPatch.apply(user, singleFieldUpdate);
+        return user;
+    }
+
+    @Benchmark
+    public User applyMultipleTypedFieldsReflectively() {
+        ReflectiveUserPatch.apply(user, typedMultiFieldUpdate);
+        return user;
+    }
+
+    @Benchmark
+    public User applySingleField() {
+        UserField.apply(user, singleFieldUpdate);
+        return user;
+    }
+
+    @Benchmark
+    public User applyMultipleFields() {
+        UserField.apply(user, multiFieldUpdate);
+        return user;
+    }
+
+    @Benchmark
+    public List<String> applyAndValidateMultipleFields() {
+        UserField.apply(user, multiFieldUpdate);
+        return userValidator.errorMessages(user);
+    }
+}
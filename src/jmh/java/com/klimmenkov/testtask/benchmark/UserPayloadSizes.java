@@ -0,0 +1,61 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klimmenkov.testtask.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Bytes on the wire per format, written to target/payload-sizes.json next to the JMH results
+public final class UserPayloadSizes {
+
+    private static final String[] FORMATS = {"json", "smile", "cbor"};
+
+    private static final int[] SIZES = {1, 100, 1000};
+
+    private UserPayloadSizes() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String format : FORMATS) {
+            ObjectMapper mapper = BenchmarkCodecs.mapper(format);
+            for (int size : SIZES) {
+                List<User> users = BenchmarkUsers.users(size);
+                for (int i = 0; i < users.size(); i++) {
+                    users.get(i).setId((long) i + 1);
+                    users.get(i).setVersion(0L);
+                }
+                byte[] payload = mapper.writeValueAsBytes(users);
+                int gzipBytes = gzip(payload).length;
+
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("format", format);
+                row.put("users", size);
+                row.put("bytes", payload.length);
+                row.put("gzipBytes", gzipBytes);
+                rows.add(row);
+                System.out.printf("%-6s %5d users %9d bytes %9d gzip%n", format, size, payload.length, gzipBytes);
+            }
+        }
+
+        Path output = Path.of(args.length > 0 ? args[0] : "target/payload-sizes.json");
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), rows);
+    }
+
+    private static byte[] gzip(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(payload);
+        }
+        return bytes.toByteArray();
+    }
+}
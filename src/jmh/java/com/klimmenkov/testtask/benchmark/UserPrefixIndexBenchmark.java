@@ -0,0 +1,80 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.klimmenkov.testtask.index.UserIndexChanges;
+import com.klimmenkov.testtask.index.UserPrefixIndex;
+import com.klimmenkov.testtask.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Typeahead lookups on an index filled the way writes fill it, through UserIndex.apply. The setup
+// prints the index size, which is the number quoted per million users in the README.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserPrefixIndexBenchmark {
+
+    private static final int CHUNK = 10_000;
+
+    private static final int LIMIT = 10;
+
+    @Param("1000000")
+    private int users;
+
+    private UserPrefixIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new UserPrefixIndex(null, null, null);
+        for (int from = 0; from < users; from += CHUNK) {
+            UserIndexChanges changes = new UserIndexChanges();
+            for (int i = from; i < Math.min(users, from + CHUNK); i++) {
+                User user = BenchmarkUsers.namedUser(i);
+                user.setId(i + 1L);
+                changes.getSaved().add(user);
+            }
+            index.apply(changes);
+        }
+        long bytes = index.memoryFootprintBytes();
+        System.out.printf("%nPrefix index: %d users, %d bytes, %.1f bytes per user%n", users, bytes,
+                bytes / (double) users);
+    }
+
+    @Benchmark
+    public long[] singleLetter() {
+        return index.search("m", LIMIT);
+    }
+
+    @Benchmark
+    public long[] namePrefix() {
+        return index.search("kova", LIMIT);
+    }
+
+    @Benchmark
+    public long[] emailPrefix() {
+        return index.search("maria.kovalenko12", LIMIT);
+    }
+
+    @Benchmark
+    public long[] firstAndLastName() {
+        return index.search("mar kov", LIMIT);
+    }
+
+    @Benchmark
+    public long[] noMatch() {
+        return index.search("zzz", LIMIT);
+    }
+}
@@ -0,0 +1,96 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.klimmenkov.testtask.TestTaskApplication;
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private static final int SEEDED_USERS = 100_000;
+
+    private ConfigurableApplicationContext context;
+
+    private UserService userService;
+
+    private final AtomicInteger nextUser = new AtomicInteger(SEEDED_USERS);
+
+    private final AtomicInteger nextPatch = new AtomicInteger();
+
+    private Long patchedUserId;
+
+    private List<Map<String, Object>> patches;
+
+    private Date fromDate;
+
+    private Date toDate;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(TestTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--logging.level.root=WARN");
+        userService = context.getBean(UserService.class);
+
+        patchedUserId = userService.createUsers(BenchmarkUsers.users(SEEDED_USERS)).getItems().get(0).getId();
+        patches = List.of(Map.of("firstName", "Jane"), Map.of("firstName", "Joan"));
+
+        fromDate = BenchmarkUsers.date(BenchmarkUsers.FIRST_BIRTH_DATE.plusYears(10));
+        toDate = BenchmarkUsers.date(BenchmarkUsers.FIRST_BIRTH_DATE.plusYears(10).plusDays(30));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public User createUser() {
+        return userService.createUser(BenchmarkUsers.user(nextUser.getAndIncrement()));
+    }
+
+    @Benchmark
+    public User partiallyUpdateUser() {
+        return userService.partiallyUpdateUser(patchedUserId, patches.get(nextPatch.getAndIncrement() & 1), null);
+    }
+
+    @Benchmark
+    public List<User> searchFirstPage() {
+        return userService.searchUsersByBirthDateRange(fromDate, toDate, null, 100);
+    }
+
+    @Benchmark
+    public List<User> searchWholeRange() {
+        return userService.searchUsersByBirthDateRange(fromDate, toDate);
+    }
+}
@@ -0,0 +1,69 @@
+package com.klimmenkov.testtask.benchmark;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.validator.AgeCutoff;
+import com.klimmenkov.testtask.validator.UserValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserValidationBenchmark {
+
+    private Validator beanValidator;
+
+    private UserValidator userValidator;
+
+    private User validUser;
+
+    private User invalidUser;
+
+    @Setup
+    public void setUp() {
+        beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+        userValidator = new UserValidator(beanValidator, new AgeCutoff(18));
+        validUser = BenchmarkUsers.user(1);
+        invalidUser = new User("not-an-email", " ", "Doe", new Date(System.currentTimeMillis() + 86_400_000L),
+                null, null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> beanValidationValidUser() {
+        return beanValidator.validate(validUser);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> beanValidationInvalidUser() {
+        return beanValidator.validate(invalidUser);
+    }
+
+    @Benchmark
+    public List<String> userValidatorValidUser() {
+        return userValidator.errorMessages(validUser);
+    }
+
+    @Benchmark
+    public List<String> userValidatorInvalidUser() {
+        return userValidator.errorMessages(invalidUser);
+    }
+}
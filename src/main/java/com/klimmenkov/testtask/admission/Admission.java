@@ -0,0 +1,17 @@
+package com.klimmenkov.testtask.admission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Handlers without it are READ for GET and WRITE for everything else
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Admission {
+
+    EndpointClass value();
+
+    // When set, requests carrying none of these parameters are unpaged and count as BULK
+    String[] pagedBy() default {};
+}
@@ -0,0 +1,116 @@
+package com.klimmenkov.testtask.admission;
+
+import com.klimmenkov.testtask.exception.TooManyRequestsException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs before the handler, so a rejected request never asks the pool for a connection
+@Component
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ADMITTED_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".admitted";
+
+    private final ClientRateLimiter rateLimiter;
+
+    private final Map<EndpointClass, Semaphore> permits = new EnumMap<>(EndpointClass.class);
+
+    private final Map<EndpointClass, Integer> maxConcurrent = new EnumMap<>(EndpointClass.class);
+
+    private final LongAdder rateLimited = new LongAdder();
+
+    private final LongAdder overCapacity = new LongAdder();
+
+    @Autowired
+    public AdmissionInterceptor(@Value("${user.admission.ratePerSecond:100}") double ratePerSecond,
+                                @Value("${user.admission.burst:200}") int burst,
+                                @Value("${user.admission.maxClients:100000}") long maxClients,
+                                @Value("${user.admission.read.maxConcurrent:100}") int read,
+                                @Value("${user.admission.write.maxConcurrent:50}") int write,
+                                @Value("${user.admission.search.maxConcurrent:20}") int search,
+                                @Value("${user.admission.bulk.maxConcurrent:2}") int bulk,
+                                @Value("${user.admission.stream.maxConcurrent:100}") int stream) {
+        this.rateLimiter = new ClientRateLimiter(ratePerSecond, burst, maxClients, System::nanoTime);
+        maxConcurrent.put(EndpointClass.READ, read);
+        maxConcurrent.put(EndpointClass.WRITE, write);
+        maxConcurrent.put(EndpointClass.SEARCH, search);
+        maxConcurrent.put(EndpointClass.BULK, bulk);
+        maxConcurrent.put(EndpointClass.STREAM, stream);
+        maxConcurrent.forEach((endpointClass, max) -> permits.put(endpointClass, new Semaphore(max)));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async requests come back through here on the second dispatch and still hold their permit
+        if (!(handler instanceof HandlerMethod handlerMethod) || request.getAttribute(ADMITTED_ATTRIBUTE) != null) {
+            return true;
+        }
+        EndpointClass endpointClass = classify(request, handlerMethod);
+
+        long waitNanos = rateLimiter.tryAcquire(request.getRemoteAddr(), endpointClass.getCost());
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            throw new TooManyRequestsException("Rate limit exceeded for " + request.getRemoteAddr(),
+                    Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        }
+        if (!permits.get(endpointClass).tryAcquire()) {
+            overCapacity.increment();
+            throw new TooManyRequestsException("Too many concurrent " + endpointClass.name().toLowerCase()
+                    + " requests", 1);
+        }
+        request.setAttribute(ADMITTED_ATTRIBUTE, endpointClass);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(ADMITTED_ATTRIBUTE) instanceof EndpointClass endpointClass) {
+            request.removeAttribute(ADMITTED_ATTRIBUTE);
+            permits.get(endpointClass).release();
+        }
+    }
+
+    public int getInFlight(EndpointClass endpointClass) {
+        return maxConcurrent.get(endpointClass) - permits.get(endpointClass).availablePermits();
+    }
+
+    public int getMaxConcurrent(EndpointClass endpointClass) {
+        return maxConcurrent.get(endpointClass);
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getOverCapacity() {
+        return overCapacity.sum();
+    }
+
+    static EndpointClass classify(HttpServletRequest request, HandlerMethod handlerMethod) {
+        Admission admission = handlerMethod.getMethodAnnotation(Admission.class);
+        if (admission == null) {
+            return HttpMethod.GET.matches(request.getMethod()) ? EndpointClass.READ : EndpointClass.WRITE;
+        }
+        if (admission.pagedBy().length == 0) {
+            return admission.value();
+        }
+        for (String parameter : admission.pagedBy()) {
+            if (request.getParameter(parameter) != null) {
+                return admission.value();
+            }
+        }
+        return EndpointClass.BULK;
+    }
+}
@@ -0,0 +1,51 @@
+package com.klimmenkov.testtask.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token bucket per client in its GCRA form: the bucket is a single AtomicLong holding the time at
+// which it will be full again, updated with compareAndSet
+public class ClientRateLimiter {
+
+    private final long nanosPerToken;
+
+    private final int burst;
+
+    private final LongSupplier nanoClock;
+
+    private final Cache<String, AtomicLong> clients;
+
+    public ClientRateLimiter(double tokensPerSecond, int burst, long maxClients, LongSupplier nanoClock) {
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+        // A bucket idle for longer than it takes to refill is the same as a new one
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(Math.max(nanosPerToken * burst, TimeUnit.SECONDS.toNanos(1))))
+                .build();
+    }
+
+    // Takes cost tokens and returns 0, or returns the nanos until they are available and takes nothing
+    public long tryAcquire(String client, int cost) {
+        AtomicLong fullAt = clients.get(client, key -> new AtomicLong(nanoClock.getAsLong()));
+        long increment = nanosPerToken * Math.min(cost, burst);
+        long tolerance = nanosPerToken * burst;
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current - now, 0) + increment;
+            if (next > tolerance) {
+                return next - tolerance;
+            }
+            if (fullAt.compareAndSet(current, now + next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.klimmenkov.testtask.admission;
+
+// Requests of one class share a concurrency cap, the cost is taken from the client's rate limit
+public enum EndpointClass {
+    READ(1),
+    WRITE(1),
+    SEARCH(2),
+    // Unpaged and streamed searches, batch creates
+    BULK(20),
+    // Long-lived event streams, which hold their slot until the client disconnects
+    STREAM(1);
+
+    private final int cost;
+
+    EndpointClass(int cost) {
+        this.cost = cost;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+}
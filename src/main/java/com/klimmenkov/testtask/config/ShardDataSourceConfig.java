@@ -0,0 +1,65 @@
+package com.klimmenkov.testtask.config;
+
+import com.klimmenkov.testtask.shard.ShardSchemaIntegrator;
+import com.klimmenkov.testtask.shard.UserShards;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Replaces spring.datasource.url with user.shards.urls; credentials default to spring.datasource.
+// Read replicas (user.datasource.replica.urls) are not supported together with shards.
+@Configuration
+@ConditionalOnProperty(name = "user.shards.urls")
+public class ShardDataSourceConfig {
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties, UserShards userShards,
+                                             @Value("${user.shards.urls}") List<String> urls,
+                                             @Value("${user.shards.username:}") String username,
+                                             @Value("${user.shards.password:}") String password,
+                                             @Value("${user.shards.maximumPoolSize:10}") int maximumPoolSize) {
+        List<HikariDataSource> shards = new ArrayList<>(userShards.count());
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setJdbcUrl(url.trim());
+            shard.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            shard.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            shard.setMaximumPoolSize(maximumPoolSize);
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(UserShards userShards) {
+        ShardSchemaIntegrator integrator = new ShardSchemaIntegrator(userShards);
+        return hibernateProperties -> hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(integrator));
+    }
+
+    // With the prod profile every shard gets the same migrations
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(UserShards userShards) {
+        return flyway -> {
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                userShards.run(shard, flyway::migrate);
+            }
+        };
+    }
+}
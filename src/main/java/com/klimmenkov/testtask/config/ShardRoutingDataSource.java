@@ -0,0 +1,55 @@
+package com.klimmenkov.testtask.config;
+
+import com.klimmenkov.testtask.shard.ShardContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+public class ShardRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRoutingDataSource.class);
+
+    private final List<? extends DataSource> shards;
+
+    public ShardRoutingDataSource(List<? extends DataSource> shards) {
+        this.shards = List.copyOf(shards);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return shard().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return shard().getConnection(username, password);
+    }
+
+    @Override
+    public void close() {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close shard data source", e);
+                }
+            }
+        }
+    }
+
+    // The connection is taken when a transaction begins, so the shard must be bound before that
+    private DataSource shard() throws SQLException {
+        int shard = ShardContext.current();
+        if (shard >= shards.size()) {
+            throw new SQLException("No data source for shard " + shard + ", " + shards.size() + " are configured");
+        }
+        return shards.get(shard);
+    }
+}
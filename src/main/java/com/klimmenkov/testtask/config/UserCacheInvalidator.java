@@ -0,0 +1,130 @@
+package com.klimmenkov.testtask.config;
+
+import com.klimmenkov.testtask.exception.ChangeLogTrimmedException;
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserChange;
+import com.klimmenkov.testtask.service.UserChangeService;
+import com.klimmenkov.testtask.service.UserChangeSubscriber;
+import com.klimmenkov.testtask.shard.UserShards;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Follows the change feed of every shard and evicts the cached users that a write on any node has
+// replaced, so a node stops serving an old version (and answering If-None-Match for it) about one
+// user.changes.pollInterval after the change commits, at most user.changes.gapTimeout when an
+// earlier transaction is slow to commit. Entries this node already holds at the new version are
+// kept. If the log was trimmed past the feed's position, the whole cache is cleared.
+@Component
+@ConditionalOnProperty(name = "user.cache.followChanges", havingValue = "true", matchIfMissing = true)
+public class UserCacheInvalidator {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCacheInvalidator.class);
+
+    private static final long RESUBSCRIBE_DELAY_SECONDS = 5;
+
+    private final UserChangeService userChangeService;
+
+    private final UserShards userShards;
+
+    private final Cache cache;
+
+    private final ScheduledExecutorService resubscriber = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-cache-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public UserCacheInvalidator(UserChangeService userChangeService, UserShards userShards,
+                                CacheManager cacheManager) {
+        this.userChangeService = userChangeService;
+        this.userShards = userShards;
+        this.cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+    }
+
+    // The cache starts empty, so only the changes from now on matter
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            int followed = shard;
+            resubscriber.execute(() -> follow(new Follower(followed, -1)));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resubscriber.shutdownNow();
+    }
+
+    private void follow(Follower follower) {
+        try {
+            if (follower.cursor < 0) {
+                follower.cursor = userChangeService.getLatestSeq(follower.shard);
+            }
+            userChangeService.subscribe(follower.shard, follower.cursor, follower);
+        } catch (RuntimeException e) {
+            log.warn("Following the changes of shard {} failed, retrying in {}s", follower.shard,
+                    RESUBSCRIBE_DELAY_SECONDS, e);
+            resubscriber.schedule(() -> follow(follower), RESUBSCRIBE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void evictIfReplaced(UserChange change) {
+        User cached = cache.get(change.getUserId(), User.class);
+        if (cached == null) {
+            return;
+        }
+        boolean replaced = change.getType() == UserChange.Type.DELETED || change.getVersion() == null
+                || cached.getVersion() == null || cached.getVersion() < change.getVersion();
+        if (replaced) {
+            cache.evict(change.getUserId());
+        }
+    }
+
+    private final class Follower implements UserChangeSubscriber {
+
+        private final int shard;
+
+        // Sequence number of the last change handled, -1 to start from the newest one
+        private volatile long cursor;
+
+        Follower(int shard, long cursor) {
+            this.shard = shard;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean deliver(List<UserChange> changes) {
+            for (UserChange change : changes) {
+                evictIfReplaced(change);
+                cursor = change.getSeq();
+            }
+            return true;
+        }
+
+        // Resumes where it stopped, nothing is missed unless those changes have been trimmed meanwhile
+        @Override
+        public void failed(RuntimeException e) {
+            if (e instanceof ChangeLogTrimmedException) {
+                cache.clear();
+                cursor = -1;
+            }
+            log.warn("Following the changes of shard {} stopped, resuming in {}s", shard,
+                    RESUBSCRIBE_DELAY_SECONDS, e);
+            resubscriber.schedule(() -> follow(this), RESUBSCRIBE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
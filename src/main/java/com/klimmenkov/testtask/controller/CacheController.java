@@ -0,0 +1,46 @@
+package com.klimmenkov.testtask.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.klimmenkov.testtask.dto.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/caches")
+public class CacheController {
+
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public CacheController(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @GetMapping("/{cacheName}")
+    public ResponseEntity<CacheStatistics> getCacheStatistics(@PathVariable String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache instanceof TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        if (!(cache instanceof CaffeineCache caffeineCache)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        CacheStats stats = caffeineCache.getNativeCache().stats();
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setName(cacheName);
+        statistics.setSize(caffeineCache.getNativeCache().estimatedSize());
+        statistics.setHitCount(stats.hitCount());
+        statistics.setMissCount(stats.missCount());
+        statistics.setEvictionCount(stats.evictionCount());
+        return ResponseEntity.ok(statistics);
+    }
+}
@@ -0,0 +1,150 @@
+package com.klimmenkov.testtask.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.klimmenkov.testtask.admission.AdmissionInterceptor;
+import com.klimmenkov.testtask.admission.EndpointClass;
+import com.klimmenkov.testtask.dto.IngestionStatistics;
+import com.klimmenkov.testtask.index.EmailBloomFilter;
+import com.klimmenkov.testtask.index.UserPrefixIndex;
+import com.klimmenkov.testtask.metrics.MetricsRegistry;
+import com.klimmenkov.testtask.metrics.PrometheusWriter;
+import com.klimmenkov.testtask.service.UserIngestionService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final CacheManager cacheManager;
+
+    private final UserIngestionService userIngestionService;
+
+    private final AdmissionInterceptor admissionInterceptor;
+
+    private final ObjectProvider<EmailBloomFilter> emailBloomFilter;
+
+    private final ObjectProvider<UserPrefixIndex> prefixIndex;
+
+    @Autowired
+    public MetricsController(MetricsRegistry metricsRegistry, CacheManager cacheManager,
+                             UserIngestionService userIngestionService, AdmissionInterceptor admissionInterceptor,
+                             ObjectProvider<EmailBloomFilter> emailBloomFilter,
+                             ObjectProvider<UserPrefixIndex> prefixIndex) {
+        this.metricsRegistry = metricsRegistry;
+        this.cacheManager = cacheManager;
+        this.userIngestionService = userIngestionService;
+        this.admissionInterceptor = admissionInterceptor;
+        this.emailBloomFilter = emailBloomFilter;
+        this.prefixIndex = prefixIndex;
+    }
+
+    @GetMapping
+    public ResponseEntity<String> getMetrics() {
+        PrometheusWriter writer = new PrometheusWriter();
+        metricsRegistry.writeTo(writer);
+        writeCaches(writer);
+        writeIngestion(writer);
+        writeAdmission(writer);
+        emailBloomFilter.ifAvailable(filter -> writeEmailBloomFilter(writer, filter));
+        prefixIndex.ifAvailable(index -> writer
+                .family("user_prefix_index_bytes", "gauge", "Memory used by the merged prefix index arrays")
+                .sample("user_prefix_index_bytes", index.memoryFootprintBytes()));
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, PrometheusWriter.CONTENT_TYPE)
+                .body(writer.toString());
+    }
+
+    private void writeCaches(PrometheusWriter writer) {
+        List<CaffeineCache> caches = new ArrayList<>();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache instanceof TransactionAwareCacheDecorator decorator) {
+                cache = decorator.getTargetCache();
+            }
+            if (cache instanceof CaffeineCache caffeineCache) {
+                caches.add(caffeineCache);
+            }
+        }
+
+        writer.family("user_cache_size", "gauge", "Estimated number of cached entries");
+        caches.forEach(cache -> writer.sample("user_cache_size", cache.getNativeCache().estimatedSize(),
+                "cache", cache.getName()));
+        List<CacheStats> stats = caches.stream().map(cache -> cache.getNativeCache().stats()).toList();
+        writer.family("user_cache_hits_total", "counter", "Cache lookups that found an entry");
+        for (int i = 0; i < caches.size(); i++) {
+            writer.sample("user_cache_hits_total", stats.get(i).hitCount(), "cache", caches.get(i).getName());
+        }
+        writer.family("user_cache_misses_total", "counter", "Cache lookups that loaded the entry");
+        for (int i = 0; i < caches.size(); i++) {
+            writer.sample("user_cache_misses_total", stats.get(i).missCount(), "cache", caches.get(i).getName());
+        }
+        writer.family("user_cache_evictions_total", "counter", "Entries evicted by size or expiry");
+        for (int i = 0; i < caches.size(); i++) {
+            writer.sample("user_cache_evictions_total", stats.get(i).evictionCount(), "cache",
+                    caches.get(i).getName());
+        }
+    }
+
+    private void writeIngestion(PrometheusWriter writer) {
+        IngestionStatistics statistics = userIngestionService.getStatistics();
+        writer.family("user_ingestion_queue_capacity", "gauge", "Users that can wait for the background writer")
+                .sample("user_ingestion_queue_capacity", statistics.getCapacity())
+                .family("user_ingestion_queue_depth", "gauge", "Users waiting for the background writer")
+                .sample("user_ingestion_queue_depth", statistics.getQueueDepth())
+                .family("user_ingestion_enqueued_total", "counter", "Users accepted for asynchronous creation")
+                .sample("user_ingestion_enqueued_total", statistics.getEnqueued())
+                .family("user_ingestion_rejected_total", "counter", "Users refused because the queue was full")
+                .sample("user_ingestion_rejected_total", statistics.getRejected())
+                .family("user_ingestion_created_total", "counter", "Queued users written to the database")
+                .sample("user_ingestion_created_total", statistics.getCreated())
+                .family("user_ingestion_failed_total", "counter", "Queued users that could not be written")
+                .sample("user_ingestion_failed_total", statistics.getFailed())
+                .family("user_ingestion_batches_total", "counter", "Batches written by the background writer")
+                .sample("user_ingestion_batches_total", statistics.getBatches())
+                .family("user_ingestion_drain_rate", "gauge", "Users written per second over the last minute")
+                .sample("user_ingestion_drain_rate", statistics.getDrainRatePerSecond());
+    }
+
+    private void writeAdmission(PrometheusWriter writer) {
+        writer.family("user_admission_in_flight", "gauge", "Admitted requests still running per endpoint class");
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            writer.sample("user_admission_in_flight", admissionInterceptor.getInFlight(endpointClass),
+                    "class", endpointClass.name().toLowerCase());
+        }
+        writer.family("user_admission_max_concurrent", "gauge", "Concurrency cap per endpoint class");
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            writer.sample("user_admission_max_concurrent", admissionInterceptor.getMaxConcurrent(endpointClass),
+                    "class", endpointClass.name().toLowerCase());
+        }
+        writer.family("user_admission_rejected_total", "counter", "Requests answered with 429")
+                .sample("user_admission_rejected_total", admissionInterceptor.getRateLimited(),
+                        "reason", "rate_limit")
+                .sample("user_admission_rejected_total", admissionInterceptor.getOverCapacity(),
+                        "reason", "concurrency");
+    }
+
+    private void writeEmailBloomFilter(PrometheusWriter writer, EmailBloomFilter filter) {
+        writer.family("user_email_bloom_checks_total", "counter", "Email uniqueness checks made by the Bloom filter")
+                .sample("user_email_bloom_checks_total", filter.getChecks())
+                .family("user_email_bloom_negatives_total", "counter", "Checks answered without a database query")
+                .sample("user_email_bloom_negatives_total", filter.getNegatives())
+                .family("user_email_bloom_bytes", "gauge", "Memory used by the Bloom filter bits")
+                .sample("user_email_bloom_bytes", filter.memoryFootprintBytes());
+    }
+}
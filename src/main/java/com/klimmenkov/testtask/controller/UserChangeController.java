@@ -0,0 +1,116 @@
+package com.klimmenkov.testtask.controller;
+
+import com.klimmenkov.testtask.admission.Admission;
+import com.klimmenkov.testtask.admission.EndpointClass;
+import com.klimmenkov.testtask.dto.UserChangeBatch;
+import com.klimmenkov.testtask.exception.ChangeLogTrimmedException;
+import com.klimmenkov.testtask.model.UserChange;
+import com.klimmenkov.testtask.service.UserChangeService;
+import com.klimmenkov.testtask.service.UserChangeSubscriber;
+import com.klimmenkov.testtask.shard.UserShards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@RequestMapping("/users/changes")
+public class UserChangeController {
+
+    private static final int DEFAULT_LIMIT = 500;
+
+    private static final int MAX_LIMIT = 10_000;
+
+    private final UserChangeService userChangeService;
+
+    private final UserShards userShards;
+
+    private final Duration streamTimeout;
+
+    @Autowired
+    public UserChangeController(UserChangeService userChangeService, UserShards userShards,
+                                @Value("${user.changes.sse.timeout:30m}") Duration streamTimeout) {
+        this.userChangeService = userChangeService;
+        this.userShards = userShards;
+        this.streamTimeout = streamTimeout;
+    }
+
+    @Admission(EndpointClass.SEARCH)
+    @GetMapping
+    public ResponseEntity<UserChangeBatch> getChanges(@RequestParam(defaultValue = "0") int shard,
+                                                      @RequestParam(defaultValue = "0") long since,
+                                                      @RequestParam(required = false) Integer limit) {
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (!isShard(shard) || since < 0 || size < 1 || size > MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userChangeService.getChanges(shard, since, size));
+    }
+
+    // Reconnecting clients resume from Last-Event-ID, which is the sequence number of the last event.
+    // Sequence numbers are per shard, so every shard is followed with a stream of its own
+    @Admission(EndpointClass.STREAM)
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestParam(defaultValue = "0") int shard,
+            @RequestParam(defaultValue = "0") long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+
+        long from = lastEventId != null ? lastEventId : since;
+        if (!isShard(shard) || from < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        // The error body cannot be written as an event stream, so a trimmed cursor is a bare 410
+        try {
+            userChangeService.getChanges(shard, from, 1);
+        } catch (ChangeLogTrimmedException e) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Runnable cancel = userChangeService.subscribe(shard, from, new UserChangeSubscriber() {
+            @Override
+            public boolean deliver(List<UserChange> changes) {
+                try {
+                    if (changes.isEmpty()) {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    }
+                    for (UserChange change : changes) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(change.getSeq()))
+                                .name("change")
+                                .data(change, MediaType.APPLICATION_JSON));
+                    }
+                    return true;
+                } catch (IOException | IllegalStateException e) {
+                    // The client is gone or the emitter has timed out
+                    return false;
+                }
+            }
+
+            @Override
+            public void failed(RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(e -> cancel.run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private boolean isShard(int shard) {
+        return shard >= 0 && shard < userShards.count();
+    }
+}
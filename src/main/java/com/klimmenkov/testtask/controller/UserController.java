@@ -1,45 +1,153 @@
 package com.klimmenkov.testtask.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.klimmenkov.testtask.admission.Admission;
+import com.klimmenkov.testtask.admission.EndpointClass;
+import com.klimmenkov.testtask.config.BinaryFormatConfig;
+import com.klimmenkov.testtask.dto.BatchCreateResult;
+import com.klimmenkov.testtask.dto.IngestionStatus;
+import com.klimmenkov.testtask.exception.PreconditionFailedException;
 import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.model.UserProjection;
+import com.klimmenkov.testtask.service.UserIngestionService;
 import com.klimmenkov.testtask.service.UserService;
+import com.klimmenkov.testtask.validator.UserValidator;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int DEFAULT_PREFIX_LIMIT = 10;
+
+    private static final int MAX_PREFIX_LIMIT = 100;
+
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     private final UserService userService;
 
+    private final UserIngestionService userIngestionService;
+
+    private final ObjectReader userReader;
+
+    private final ObjectWriter userWriter;
+
+    private final UserValidator userValidator;
+
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserIngestionService userIngestionService,
+                          ObjectMapper objectMapper, UserValidator userValidator) {
         this.userService = userService;
+        this.userIngestionService = userIngestionService;
+        this.userValidator = userValidator;
+        this.userReader = objectMapper.readerFor(User.class);
+        this.userWriter = objectMapper.writerFor(User.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator((String) null);
+    }
+
+    @InitBinder("user")
+    public void initUserBinder(WebDataBinder binder) {
+        binder.setValidator(userValidator);
     }
 
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody @Valid User user) {
         User createdUser = userService.createUser(user);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(eTag(createdUser)).body(createdUser);
+    }
+
+    @PostMapping(headers = "Prefer=respond-async")
+    public ResponseEntity<IngestionStatus> createUserAsync(@RequestBody @Valid User user) {
+        IngestionStatus status = userIngestionService.enqueue(user);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/users/ingestions/{ticket}")
+                .buildAndExpand(status.getTicket())
+                .toUri();
+        return ResponseEntity.accepted()
+                .location(location)
+                .header("Preference-Applied", "respond-async")
+                .body(status);
+    }
+
+    @Admission(EndpointClass.BULK)
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            BinaryFormatConfig.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BatchCreateResult> createUsers(@RequestBody List<User> users) {
+        return ResponseEntity.ok(userService.createUsers(users));
+    }
+
+    @Admission(EndpointClass.BULK)
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchCreateResult> createUsersFromNdjson(InputStream body) throws IOException {
+        List<User> users = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                users.add(readLine(line));
+            }
+        }
+        return ResponseEntity.ok(userService.createUsers(users));
+    }
+
+    @GetMapping(params = "email")
+    public ResponseEntity<User> getUserByEmail(@RequestParam String email) {
+        User user = userService.getUserByEmail(email);
+        return ResponseEntity.ok().eTag(eTag(user)).body(user);
+    }
+
+    @GetMapping("/{userId}")
+    public ResponseEntity<User> getUser(@PathVariable Long userId) {
+        User user = userService.getUser(userId);
+        return ResponseEntity.ok().eTag(eTag(user)).body(user);
     }
 
     @PatchMapping("/{userId}")
-    public ResponseEntity<User> partiallyUpdateUser(@PathVariable Long userId, @RequestBody Map<String, Object> updates) {
-        User updatedUser = userService.partiallyUpdateUser(userId, updates);
-        return ResponseEntity.ok(updatedUser);
+    public ResponseEntity<User> partiallyUpdateUser(@PathVariable Long userId, @RequestBody Map<String, Object> updates,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        User updatedUser = userService.partiallyUpdateUser(userId, updates, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(updatedUser)).body(updatedUser);
     }
 
     @PutMapping("/{userId}")
-    public ResponseEntity<User> updateUser(@PathVariable Long userId, @RequestBody User updatedUser) {
-        User user = userService.updateUser(userId, updatedUser);
-        return ResponseEntity.ok(user);
+    public ResponseEntity<User> updateUser(@PathVariable Long userId, @RequestBody @Valid User updatedUser,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        User user = userService.updateUser(userId, updatedUser, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(user)).body(user);
     }
 
     @DeleteMapping("/{userId}")
@@ -48,8 +156,60 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    @Admission(value = EndpointClass.SEARCH, pagedBy = {"limit", "next"})
     @GetMapping("/search")
-    public ResponseEntity<List<User>> searchUsersByBirthDateRange(
+    public ResponseEntity<List<?>> searchUsersByBirthDateRange(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date fromDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date toDate,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String next,
+            @RequestParam(required = false) String fields) {
+
+        if (fromDate.after(toDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<String> selectedFields = fields == null ? null : UserProjection.parse(fields);
+
+        if (limit == null && next == null) {
+            if (selectedFields == null) {
+                return ResponseEntity.ok(userService.searchUsersByBirthDateRange(fromDate, toDate));
+            }
+            return ResponseEntity.ok(userService.searchUserFieldsByBirthDateRange(fromDate, toDate, selectedFields));
+        }
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        UserCursor after = next == null ? null : UserCursor.decode(next);
+        if (selectedFields == null) {
+            List<User> users = userService.searchUsersByBirthDateRange(fromDate, toDate, after, pageSize);
+            return page(users, nextCursor(users, UserCursor::after, pageSize), pageSize, fromDate, toDate);
+        }
+        List<Map<String, Object>> rows =
+                userService.searchUserFieldsByBirthDateRange(fromDate, toDate, after, pageSize, selectedFields);
+        // The rows carry id and birthDate for the cursor, only the selected fields are sent
+        UserCursor nextCursor = nextCursor(rows, UserProjection::cursor, pageSize);
+        UserProjection.retainSelected(rows, selectedFields);
+        return page(rows, nextCursor, pageSize, fromDate, toDate);
+    }
+
+    // A search class request: an index lookup, or a full scan when the index is disabled
+    @Admission(EndpointClass.SEARCH)
+    @GetMapping("/search/prefix")
+    public ResponseEntity<List<User>> searchUsersByPrefix(@RequestParam String q,
+                                                          @RequestParam(required = false) Integer limit) {
+        int size = limit == null ? DEFAULT_PREFIX_LIMIT : limit;
+        if (q.isBlank() || size < 1 || size > MAX_PREFIX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.searchUsersByPrefix(q, size));
+    }
+
+    @Admission(EndpointClass.BULK)
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsersByBirthDateRange(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date fromDate,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date toDate) {
 
@@ -57,7 +217,73 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
 
-        List<User> users = userService.searchUsersByBirthDateRange(fromDate, toDate);
-        return ResponseEntity.ok(users);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = userWriter.createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                userService.streamUsersByBirthDateRange(fromDate, toDate, user -> writeLine(generator, user));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Null when the page is the last one
+    private static <T> UserCursor nextCursor(List<T> rows, Function<T, UserCursor> cursor, int pageSize) {
+        return rows.size() < pageSize ? null : cursor.apply(rows.get(rows.size() - 1));
+    }
+
+    private ResponseEntity<List<?>> page(List<?> rows, UserCursor nextCursor, int pageSize,
+                                         Date fromDate, Date toDate) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        userService.countUsersByBirthDateRange(fromDate, toDate)
+                .ifPresent(total -> response.header(TOTAL_COUNT_HEADER, Long.toString(total)));
+        if (nextCursor == null) {
+            return response.body(rows);
+        }
+
+        String nextPage = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("limit", pageSize)
+                .replaceQueryParam("next", nextCursor.encode())
+                .toUriString();
+        return response
+                .header(HttpHeaders.LINK, "<" + nextPage + ">; rel=\"next\"")
+                .body(rows);
+    }
+
+    private static String eTag(User user) {
+        return "\"" + user.getVersion() + "\"";
+    }
+
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 2 || eTag.charAt(0) != '"' || eTag.charAt(eTag.length() - 1) != '"') {
+            throw new PreconditionFailedException("If-Match must be a single strong ETag: " + ifMatch);
+        }
+        try {
+            return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("Unknown ETag: " + ifMatch);
+        }
+    }
+
+    private User readLine(String line) {
+        try {
+            return userReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void writeLine(JsonGenerator generator, User user) {
+        try {
+            userWriter.writeValue(generator, user);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,72 @@
+package com.klimmenkov.testtask.controller;
+
+import com.klimmenkov.testtask.admission.Admission;
+import com.klimmenkov.testtask.admission.EndpointClass;
+import com.klimmenkov.testtask.csv.UserCsv;
+import com.klimmenkov.testtask.dto.CsvImportResult;
+import com.klimmenkov.testtask.service.UserCsvService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+@RestController
+@RequestMapping("/users/csv")
+public class UserCsvController {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UserCsvService userCsvService;
+
+    @Autowired
+    public UserCsvController(UserCsvService userCsvService) {
+        this.userCsvService = userCsvService;
+    }
+
+    @Admission(EndpointClass.BULK)
+    @GetMapping(produces = UserCsv.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date fromDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date toDate) {
+
+        if ((fromDate == null) != (toDate == null) || (fromDate != null && fromDate.after(toDate))) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+            userCsvService.exportUsers(fromDate, toDate, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("users.csv").build().toString())
+                .body(body);
+    }
+
+    @Admission(EndpointClass.BULK)
+    @PostMapping(consumes = UserCsv.MEDIA_TYPE)
+    public ResponseEntity<CsvImportResult> importUsers(InputStream body) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+        return ResponseEntity.ok(userCsvService.importUsers(reader));
+    }
+}
@@ -0,0 +1,60 @@
+package com.klimmenkov.testtask.controller;
+
+import com.klimmenkov.testtask.dto.DeleteJobStatus;
+import com.klimmenkov.testtask.service.UserDeleteJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+
+@RestController
+@RequestMapping("/users/delete-jobs")
+public class UserDeleteJobController {
+
+    private final UserDeleteJobService userDeleteJobService;
+
+    @Autowired
+    public UserDeleteJobController(UserDeleteJobService userDeleteJobService) {
+        this.userDeleteJobService = userDeleteJobService;
+    }
+
+    @PostMapping("/by-ids")
+    public ResponseEntity<DeleteJobStatus> deleteUsersByIds(@RequestBody List<Long> userIds) {
+        return accepted(userDeleteJobService.deleteUsersByIds(userIds));
+    }
+
+    @PostMapping("/by-birth-date")
+    public ResponseEntity<DeleteJobStatus> deleteUsersByBirthDateRange(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date fromDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date toDate) {
+
+        if (fromDate.after(toDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return accepted(userDeleteJobService.deleteUsersByBirthDateRange(fromDate, toDate));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<DeleteJobStatus> getJob(@PathVariable String jobId) {
+        return ResponseEntity.of(userDeleteJobService.getJob(jobId));
+    }
+
+    private ResponseEntity<DeleteJobStatus> accepted(DeleteJobStatus status) {
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/users/delete-jobs/{jobId}")
+                .buildAndExpand(status.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(status);
+    }
+}
@@ -0,0 +1,33 @@
+package com.klimmenkov.testtask.controller;
+
+import com.klimmenkov.testtask.dto.IngestionStatistics;
+import com.klimmenkov.testtask.dto.IngestionStatus;
+import com.klimmenkov.testtask.service.UserIngestionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/users/ingestions")
+public class UserIngestionController {
+
+    private final UserIngestionService userIngestionService;
+
+    @Autowired
+    public UserIngestionController(UserIngestionService userIngestionService) {
+        this.userIngestionService = userIngestionService;
+    }
+
+    @GetMapping
+    public ResponseEntity<IngestionStatistics> getStatistics() {
+        return ResponseEntity.ok(userIngestionService.getStatistics());
+    }
+
+    @GetMapping("/{ticket}")
+    public ResponseEntity<IngestionStatus> getStatus(@PathVariable String ticket) {
+        return ResponseEntity.of(userIngestionService.getStatus(ticket));
+    }
+}
@@ -0,0 +1,19 @@
+package com.klimmenkov.testtask.csv;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public final class UserCsv {
+
+    public static final String MEDIA_TYPE = "text/csv";
+
+    public static final List<String> COLUMNS =
+            List.of("id", "email", "firstName", "lastName", "birthDate", "address", "phoneNumber", "version");
+
+    // Birth dates are days at UTC midnight, the same way Jackson reads "yyyy-MM-dd"
+    static final DateTimeFormatter BIRTH_DATE = DateTimeFormatter.ISO_LOCAL_DATE.withZone(ZoneOffset.UTC);
+
+    private UserCsv() {
+    }
+}
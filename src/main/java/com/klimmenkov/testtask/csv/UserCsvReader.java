@@ -0,0 +1,180 @@
+package com.klimmenkov.testtask.csv;
+
+import com.klimmenkov.testtask.exception.InvalidCsvException;
+import com.klimmenkov.testtask.model.User;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+// Reads one record at a time, so memory stays bounded by the longest row whatever the file size
+public class UserCsvReader {
+
+    public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private static final Set<String> REQUIRED = Set.of("email", "firstName", "lastName", "birthDate");
+
+    private static final Set<String> IGNORED = Set.of("id", "version");
+
+    private final Reader reader;
+
+    private final StringBuilder field = new StringBuilder();
+
+    private int recordLength;
+
+    private int pending = -2;
+
+    private int rowNumber;
+
+    private final int email;
+
+    private final int firstName;
+
+    private final int lastName;
+
+    private final int birthDate;
+
+    private final int address;
+
+    private final int phoneNumber;
+
+    private final int columns;
+
+    public record Row(int number, User user, String error) {
+    }
+
+    // Takes a buffered reader, the header names the columns in any order. A byte order mark is skipped
+    public UserCsvReader(Reader reader) throws IOException {
+        this.reader = reader;
+        if (peek() == '\uFEFF') {
+            read();
+        }
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new InvalidCsvException("CSV header is missing");
+        }
+        for (String column : header) {
+            if (!UserCsv.COLUMNS.contains(column)) {
+                throw new InvalidCsvException("Unknown CSV column: " + column);
+            }
+        }
+        for (String column : REQUIRED) {
+            if (!header.contains(column)) {
+                throw new InvalidCsvException("CSV column is missing: " + column);
+            }
+        }
+        if (header.size() != header.stream().distinct().count()) {
+            throw new InvalidCsvException("CSV header repeats a column");
+        }
+        this.email = header.indexOf("email");
+        this.firstName = header.indexOf("firstName");
+        this.lastName = header.indexOf("lastName");
+        this.birthDate = header.indexOf("birthDate");
+        this.address = header.indexOf("address");
+        this.phoneNumber = header.indexOf("phoneNumber");
+        this.columns = header.size();
+    }
+
+    // Returns null at the end of the input, blank lines are skipped
+    public Row next() throws IOException {
+        List<String> record;
+        do {
+            record = readRecord();
+            if (record == null) {
+                return null;
+            }
+        } while (record.size() == 1 && record.get(0).isEmpty());
+        rowNumber++;
+
+        if (record.size() != columns) {
+            return new Row(rowNumber, null, "Expected " + columns + " fields, found " + record.size());
+        }
+        Date date;
+        try {
+            String value = record.get(birthDate);
+            date = value.isEmpty() ? null
+                    : Date.from(LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant());
+        } catch (DateTimeParseException e) {
+            return new Row(rowNumber, null, "birthDate must be yyyy-MM-dd: " + record.get(birthDate));
+        }
+        User user = new User(value(record, email), value(record, firstName), value(record, lastName), date,
+                value(record, address), value(record, phoneNumber));
+        return new Row(rowNumber, user, null);
+    }
+
+    private static String value(List<String> record, int index) {
+        if (index < 0) {
+            return null;
+        }
+        String value = record.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private List<String> readRecord() throws IOException {
+        if (peek() < 0) {
+            return null;
+        }
+        List<String> record = new ArrayList<>(columns > 0 ? columns : UserCsv.COLUMNS.size());
+        recordLength = 0;
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c < 0) {
+                    throw new InvalidCsvException("Row " + (rowNumber + 1) + " has an unterminated quoted field");
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                record.add(field.toString());
+                return record;
+            } else {
+                append((char) c);
+            }
+        }
+    }
+
+    private void append(char c) {
+        if (++recordLength > MAX_RECORD_LENGTH) {
+            throw new InvalidCsvException("Row " + (rowNumber + 1) + " is longer than " + MAX_RECORD_LENGTH
+                    + " characters");
+        }
+        field.append(c);
+    }
+
+    private int peek() throws IOException {
+        if (pending == -2) {
+            pending = reader.read();
+        }
+        return pending;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        pending = -2;
+        return c;
+    }
+}
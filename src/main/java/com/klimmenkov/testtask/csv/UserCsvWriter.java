@@ -0,0 +1,74 @@
+package com.klimmenkov.testtask.csv;
+
+import com.klimmenkov.testtask.model.User;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// RFC 4180: CRLF line ends, fields quoted only when they contain a separator, quote or line break
+public class UserCsvWriter {
+
+    private final Writer writer;
+
+    public UserCsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void writeHeader() throws IOException {
+        for (int i = 0; i < UserCsv.COLUMNS.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(UserCsv.COLUMNS.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    public void write(User user) throws IOException {
+        field(user.getId() == null ? null : user.getId().toString());
+        writer.write(',');
+        field(user.getEmail());
+        writer.write(',');
+        field(user.getFirstName());
+        writer.write(',');
+        field(user.getLastName());
+        writer.write(',');
+        field(user.getBirthDate() == null ? null : UserCsv.BIRTH_DATE.format(user.getBirthDate().toInstant()));
+        writer.write(',');
+        field(user.getAddress());
+        writer.write(',');
+        field(user.getPhoneNumber());
+        writer.write(',');
+        field(user.getVersion() == null ? null : user.getVersion().toString());
+        writer.write("\r\n");
+    }
+
+    private void field(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BatchCreateResult {
+
+    private int created;
+
+    private int failed;
+
+    private List<BatchItemResult> items;
+
+    public static BatchCreateResult of(List<BatchItemResult> items) {
+        BatchCreateResult result = new BatchCreateResult();
+        int created = (int) items.stream().filter(BatchItemResult::isCreated).count();
+        result.setCreated(created);
+        result.setFailed(items.size() - created);
+        result.setItems(items);
+        return result;
+    }
+}
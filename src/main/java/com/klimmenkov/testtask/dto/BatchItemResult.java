@@ -0,0 +1,34 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BatchItemResult {
+
+    private int index;
+
+    private boolean created;
+
+    private Long id;
+
+    private List<String> errors;
+
+    public static BatchItemResult created(int index, Long id) {
+        BatchItemResult result = new BatchItemResult();
+        result.setIndex(index);
+        result.setCreated(true);
+        result.setId(id);
+        return result;
+    }
+
+    public static BatchItemResult failed(int index, List<String> errors) {
+        BatchItemResult result = new BatchItemResult();
+        result.setIndex(index);
+        result.setErrors(errors);
+        return result;
+    }
+}
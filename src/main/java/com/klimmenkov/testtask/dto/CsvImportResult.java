@@ -0,0 +1,24 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CsvImportResult {
+
+    private long rows;
+
+    private long created;
+
+    private long rejected;
+
+    // The first rejected rows only, see rejected for the total
+    private List<CsvRejectedRow> rejections = new ArrayList<>();
+
+    // Set when the file could not be read to the end, rows before it have been imported
+    private String error;
+}
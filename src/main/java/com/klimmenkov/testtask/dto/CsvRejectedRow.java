@@ -0,0 +1,22 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CsvRejectedRow {
+
+    private long row;
+
+    private List<String> errors;
+
+    public static CsvRejectedRow of(long row, List<String> errors) {
+        CsvRejectedRow rejectedRow = new CsvRejectedRow();
+        rejectedRow.setRow(row);
+        rejectedRow.setErrors(errors);
+        return rejectedRow;
+    }
+}
@@ -0,0 +1,33 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+public class DeleteJobStatus {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private String id;
+
+    private State state;
+
+    private long total;
+
+    private long deleted;
+
+    private int chunks;
+
+    private String error;
+
+    private Date createdAt;
+
+    private Date startedAt;
+
+    private Date finishedAt;
+}
@@ -0,0 +1,25 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class IngestionStatistics {
+
+    private int capacity;
+
+    private int queueDepth;
+
+    private long enqueued;
+
+    private long rejected;
+
+    private long created;
+
+    private long failed;
+
+    private long batches;
+
+    private double drainRatePerSecond;
+}
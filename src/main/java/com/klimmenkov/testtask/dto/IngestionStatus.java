@@ -0,0 +1,46 @@
+package com.klimmenkov.testtask.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class IngestionStatus {
+
+    public enum State {
+        PENDING, CREATED, FAILED
+    }
+
+    private String ticket;
+
+    private State state;
+
+    private Long userId;
+
+    private List<String> errors;
+
+    public static IngestionStatus pending(String ticket) {
+        IngestionStatus status = new IngestionStatus();
+        status.setTicket(ticket);
+        status.setState(State.PENDING);
+        return status;
+    }
+
+    public static IngestionStatus created(String ticket, Long userId) {
+        IngestionStatus status = new IngestionStatus();
+        status.setTicket(ticket);
+        status.setState(State.CREATED);
+        status.setUserId(userId);
+        return status;
+    }
+
+    public static IngestionStatus failed(String ticket, List<String> errors) {
+        IngestionStatus status = new IngestionStatus();
+        status.setTicket(ticket);
+        status.setState(State.FAILED);
+        status.setErrors(errors);
+        return status;
+    }
+}
@@ -0,0 +1,24 @@
+package com.klimmenkov.testtask.dto;
+
+import com.klimmenkov.testtask.model.UserChange;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class UserChangeBatch {
+
+    private List<UserChange> changes;
+
+    // Pass as since to get the following changes, equals since when there was nothing new
+    private long next;
+
+    public static UserChangeBatch of(List<UserChange> changes, long since) {
+        UserChangeBatch batch = new UserChangeBatch();
+        batch.setChanges(changes);
+        batch.setNext(changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq());
+        return batch;
+    }
+}
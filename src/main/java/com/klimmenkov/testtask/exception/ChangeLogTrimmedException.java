@@ -0,0 +1,8 @@
+package com.klimmenkov.testtask.exception;
+
+public class ChangeLogTrimmedException extends RuntimeException {
+
+    public ChangeLogTrimmedException(String message) {
+        super(message);
+    }
+}
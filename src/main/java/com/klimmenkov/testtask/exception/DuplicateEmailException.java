@@ -0,0 +1,8 @@
+package com.klimmenkov.testtask.exception;
+
+public class DuplicateEmailException extends RuntimeException {
+
+    public DuplicateEmailException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.klimmenkov.testtask.exception;
+
+public class IndexNotReadyException extends RuntimeException {
+
+    public IndexNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.klimmenkov.testtask.exception;
+
+public class InvalidCsvException extends RuntimeException {
+
+    public InvalidCsvException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.klimmenkov.testtask.exception;
+
+public class InvalidUserFieldException extends RuntimeException {
+
+    public InvalidUserFieldException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.klimmenkov.testtask.exception;
+
+import java.util.List;
+
+public class UserValidationException extends RuntimeException {
+
+    private final List<String> errors;
+
+    public UserValidationException(List<String> errors) {
+        super(String.join(", ", errors));
+        this.errors = errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
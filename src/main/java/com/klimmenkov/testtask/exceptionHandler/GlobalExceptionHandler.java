@@ -1,8 +1,24 @@
 package com.klimmenkov.testtask.exceptionHandler;
 
 import com.klimmenkov.testtask.error.ApiError;
+import com.klimmenkov.testtask.exception.ChangeLogTrimmedException;
+import com.klimmenkov.testtask.exception.DuplicateEmailException;
+import com.klimmenkov.testtask.exception.IndexNotReadyException;
+import com.klimmenkov.testtask.exception.IngestionQueueFullException;
+import com.klimmenkov.testtask.exception.InvalidCsvException;
+import com.klimmenkov.testtask.exception.InvalidCursorException;
+import com.klimmenkov.testtask.exception.InvalidUserFieldException;
+import com.klimmenkov.testtask.exception.PreconditionFailedException;
+import com.klimmenkov.testtask.exception.TooManyRequestsException;
 import com.klimmenkov.testtask.exception.UserNotFoundException;
+import com.klimmenkov.testtask.exception.UserValidationException;
+import com.klimmenkov.testtask.repository.UserConstraints;
 import jakarta.validation.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -17,6 +33,8 @@ import java.util.stream.Collectors;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<ApiError> handleUserNotFoundException(UserNotFoundException ex) {
         ApiError apiError = new ApiError();
@@ -28,6 +46,142 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(apiError);
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiError> handleInvalidCursorException(InvalidCursorException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.BAD_REQUEST.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(400);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+
+    @ExceptionHandler(InvalidUserFieldException.class)
+    public ResponseEntity<ApiError> handleInvalidUserFieldException(InvalidUserFieldException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.BAD_REQUEST.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(400);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+
+    @ExceptionHandler(InvalidCsvException.class)
+    public ResponseEntity<ApiError> handleInvalidCsvException(InvalidCsvException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.BAD_REQUEST.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(400);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiError> handlePreconditionFailedException(PreconditionFailedException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(412);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(apiError);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiError> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.CONFLICT.value());
+        apiError.setDetail("User has been modified concurrently, retry the request");
+        apiError.setCode(409);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(apiError);
+    }
+
+    @ExceptionHandler(DuplicateEmailException.class)
+    public ResponseEntity<ApiError> handleDuplicateEmailException(DuplicateEmailException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.CONFLICT.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(409);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(apiError);
+    }
+
+    @ExceptionHandler(ChangeLogTrimmedException.class)
+    public ResponseEntity<ApiError> handleChangeLogTrimmedException(ChangeLogTrimmedException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.GONE.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(410);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.GONE).body(apiError);
+    }
+
+    // The service turns a lost race for an email into DuplicateEmailException, anything else reaching here
+    // is a constraint the validator does not cover. The driver's message names SQL and tables, so it is
+    // only logged.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ApiError> handleDataIntegrityViolationException(DataIntegrityViolationException ex) {
+        if (UserConstraints.isDuplicateEmail(ex)) {
+            return handleDuplicateEmailException(new DuplicateEmailException("Email is already registered"));
+        }
+        log.warn("Request violated a database constraint", ex);
+        String message = "User violates a database constraint";
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.BAD_REQUEST.value());
+        apiError.setDetail(message);
+        apiError.setCode(400);
+        apiError.setErrors(Collections.singletonList(message));
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+
+    @ExceptionHandler(IngestionQueueFullException.class)
+    public ResponseEntity<ApiError> handleIngestionQueueFullException(IngestionQueueFullException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(503);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(apiError);
+    }
+
+    // An index loads once per start, in seconds to a few minutes for large tables
+    @ExceptionHandler(IndexNotReadyException.class)
+    public ResponseEntity<ApiError> handleIndexNotReadyException(IndexNotReadyException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(503);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(apiError);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiError> handleTooManyRequestsException(TooManyRequestsException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        apiError.setDetail(ex.getMessage());
+        apiError.setCode(429);
+        apiError.setErrors(Collections.singletonList(ex.getMessage()));
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(apiError);
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<ApiError> handleAgeNotAllowedException(ConstraintViolationException ex) {
         ApiError apiError = new ApiError();
@@ -53,4 +207,15 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
     }
+
+    @ExceptionHandler(UserValidationException.class)
+    public ResponseEntity<ApiError> handleUserValidationException(UserValidationException ex) {
+        ApiError apiError = new ApiError();
+        apiError.setStatus(HttpStatus.BAD_REQUEST.value());
+        apiError.setDetail("Watch errors list");
+        apiError.setCode(400);
+        apiError.setErrors(ex.getErrors());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,471 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.shard.UserShards;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Component
+@ConditionalOnProperty(name = "user.index.birthDate.enabled", havingValue = "true")
+public class BirthDateIndex implements UserIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BirthDateIndex.class);
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final int NOT_INDEXED = Integer.MIN_VALUE;
+
+    private static final int BULK_THRESHOLD = 64;
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate loadTransaction;
+
+    private final UserShards userShards;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private LongIntMap dayById = new LongIntMap(1024);
+
+    private int[] days = new int[1024];
+
+    private long[] ids = new long[1024];
+
+    private int size;
+
+    // Changes committed while load() scans the database, replayed on top of what it read
+    private List<UserIndexChanges> pending;
+
+    private volatile boolean ready;
+
+    @Autowired
+    public BirthDateIndex(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                          UserShards userShards) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        // Not read-only on purpose: the index must start from the primary, whose commits it follows
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Scans without holding the lock, so commits are never kept waiting for the database. The
+    // lock is only taken to start buffering and to swap in the result.
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        setPending(new ArrayList<>());
+        boolean loaded = false;
+        try {
+            Entries entries = new Entries(1024);
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                userShards.run(shard, () -> loadTransaction.executeWithoutResult(status -> {
+                    try (Stream<Object[]> rows = userRepository.streamIdsAndBirthDates()) {
+                        rows.forEach(row -> {
+                            if (row[1] != null) {
+                                entries.add(toEpochDay((Date) row[1]), (Long) row[0]);
+                            }
+                        });
+                    }
+                }));
+            }
+            entries.keepLastPerId(new LongIntMap(16));
+            entries.sort();
+            LongIntMap days = new LongIntMap(Math.max(1024, entries.size));
+            for (int i = 0; i < entries.size; i++) {
+                days.put(entries.ids[i], entries.days[i]);
+            }
+
+            lock.writeLock().lock();
+            try {
+                this.days = entries.days;
+                this.ids = entries.ids;
+                this.size = entries.size;
+                this.dayById = days;
+                for (UserIndexChanges changes : pending) {
+                    applyLocked(changes);
+                }
+                pending = null;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loaded = true;
+            log.info("Birth date index loaded {} users in {} ms, {} bytes", entries.size,
+                    (System.nanoTime() - start) / 1_000_000, memoryFootprintBytes());
+        } finally {
+            if (!loaded) {
+                setPending(null);
+            }
+        }
+    }
+
+    private void setPending(List<UserIndexChanges> changes) {
+        lock.writeLock().lock();
+        try {
+            pending = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long count(Date fromDate, Date toDate) {
+        int fromDay = toEpochDay(fromDate);
+        int toDay = toEpochDay(toDate);
+        lock.readLock().lock();
+        try {
+            return Math.max(0, lowerBound(toDay + 1, Long.MIN_VALUE) - lowerBound(fromDay, Long.MIN_VALUE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] page(Date fromDate, Date toDate, UserCursor after, int limit) {
+        return slice(fromDate, toDate, after, limit).getIds();
+    }
+
+    // Users the index still lists can be gone from the table (deleted, the index not yet told), so
+    // their places are filled from further on in the index. A short page then still means the last one.
+    // rowsByIds looks up one slice, in the slice's order; with shards it asks each shard for its ids.
+    public <T> List<T> page(Date fromDate, Date toDate, UserCursor after, int limit,
+                            Function<long[], List<T>> rowsByIds) {
+        List<T> rows = new ArrayList<>(limit);
+        UserCursor cursor = after;
+        while (rows.size() < limit) {
+            int wanted = limit - rows.size();
+            Slice slice = slice(fromDate, toDate, cursor, wanted);
+            rows.addAll(rowsByIds.apply(slice.getIds()));
+            if (slice.getIds().length < wanted) {
+                break;
+            }
+            cursor = slice.getLast();
+        }
+        return rows;
+    }
+
+    // A page of ids and the position of its last one, to continue after it even if that user has
+    // been deleted since (the index learns of a delete only after it commits)
+    public Slice slice(Date fromDate, Date toDate, UserCursor after, int limit) {
+        int fromDay = toEpochDay(fromDate);
+        int toDay = toEpochDay(toDate);
+        int afterDay = toEpochDay(after.getBirthDate());
+        long afterId = after.getId();
+        lock.readLock().lock();
+        try {
+            int start = lowerBound(fromDay, Long.MIN_VALUE);
+            int afterStart = afterId == Long.MAX_VALUE ? lowerBound(afterDay + 1, Long.MIN_VALUE) : lowerBound(afterDay, afterId + 1);
+            start = Math.max(start, afterStart);
+            int end = lowerBound(toDay + 1, Long.MIN_VALUE);
+            int count = Math.max(0, Math.min(limit, end - start));
+            UserCursor last = count == 0 ? null : new UserCursor(toDate(days[start + count - 1]), ids[start + count - 1]);
+            return new Slice(Arrays.copyOfRange(ids, start, start + count), last);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long memoryFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) days.length * Integer.BYTES + (long) ids.length * Long.BYTES + dayById.memoryFootprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(UserIndexChanges changes) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(changes);
+            } else {
+                applyLocked(changes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyLocked(UserIndexChanges changes) {
+        Entries upserts = new Entries(changes.getSaved().size());
+        List<Long> removedIds = new ArrayList<>(changes.getRemovedIds());
+        for (User user : changes.getSaved()) {
+            if (user.getBirthDate() != null) {
+                upserts.add(toEpochDay(user.getBirthDate()), user.getId());
+            } else {
+                removedIds.add(user.getId());
+            }
+        }
+        LongIntMap removals = new LongIntMap(removedIds.size());
+        for (Long userId : removedIds) {
+            removals.put(userId, 0);
+        }
+
+        if (upserts.size + removedIds.size() < BULK_THRESHOLD) {
+            for (int i = 0; i < upserts.size; i++) {
+                if (removals.get(upserts.ids[i], NOT_INDEXED) == NOT_INDEXED) {
+                    putEntry(upserts.days[i], upserts.ids[i]);
+                }
+            }
+            for (Long userId : removedIds) {
+                removeEntry(userId);
+            }
+        } else {
+            bulkUpsert(upserts, removedIds, removals);
+        }
+    }
+
+    private void putEntry(int day, long id) {
+        int oldDay = dayById.get(id, NOT_INDEXED);
+        if (oldDay == day) {
+            return;
+        }
+        if (oldDay != NOT_INDEXED) {
+            removeAt(lowerBound(oldDay, id));
+        }
+        insertAt(lowerBound(day, id), day, id);
+        dayById.put(id, day);
+    }
+
+    private void removeEntry(long id) {
+        int oldDay = dayById.get(id, NOT_INDEXED);
+        if (oldDay != NOT_INDEXED) {
+            removeAt(lowerBound(oldDay, id));
+            dayById.remove(id);
+        }
+    }
+
+    private void insertAt(int position, int day, long id) {
+        ensureCapacity(size + 1);
+        System.arraycopy(days, position, days, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        days[position] = day;
+        ids[position] = id;
+        size++;
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(days, position + 1, days, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+    }
+
+    // Work per touched id plus two block moves over the arrays: the old entries are found through
+    // dayById, the survivors are compacted and the upserts merged in by System.arraycopy runs
+    private void bulkUpsert(Entries upserts, List<Long> removedIds, LongIntMap removals) {
+        upserts.keepLastPerId(removals);
+        upserts.sort();
+
+        BitSet dropped = new BitSet();
+        for (int i = 0; i < upserts.size; i++) {
+            markIndexed(upserts.ids[i], dropped);
+        }
+        for (Long userId : removedIds) {
+            markIndexed(userId, dropped);
+            dayById.remove(userId);
+        }
+        compact(dropped);
+        merge(upserts);
+
+        for (int i = 0; i < upserts.size; i++) {
+            dayById.put(upserts.ids[i], upserts.days[i]);
+        }
+    }
+
+    private void markIndexed(long id, BitSet dropped) {
+        int oldDay = dayById.get(id, NOT_INDEXED);
+        if (oldDay != NOT_INDEXED) {
+            dropped.set(lowerBound(oldDay, id, size));
+        }
+    }
+
+    private void compact(BitSet dropped) {
+        int kept = dropped.nextSetBit(0);
+        if (kept < 0) {
+            return;
+        }
+        for (int removed = kept; removed >= 0; ) {
+            int next = dropped.nextSetBit(removed + 1);
+            int end = next < 0 ? size : next;
+            System.arraycopy(days, removed + 1, days, kept, end - removed - 1);
+            System.arraycopy(ids, removed + 1, ids, kept, end - removed - 1);
+            kept += end - removed - 1;
+            removed = next;
+        }
+        size = kept;
+    }
+
+    // From the last upsert backwards, each one's position among the old entries is searched for and
+    // the old entries after it are moved up in one block
+    private void merge(Entries upserts) {
+        ensureCapacity(size + upserts.size);
+        int end = size;
+        for (int j = upserts.size - 1; j >= 0; j--) {
+            int position = lowerBound(upserts.days[j], upserts.ids[j], end);
+            System.arraycopy(days, position, days, position + j + 1, end - position);
+            System.arraycopy(ids, position, ids, position + j + 1, end - position);
+            days[position + j] = upserts.days[j];
+            ids[position + j] = upserts.ids[j];
+            end = position;
+        }
+        size += upserts.size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > days.length) {
+            int newCapacity = Math.max(capacity, days.length + (days.length >> 1));
+            days = Arrays.copyOf(days, newCapacity);
+            ids = Arrays.copyOf(ids, newCapacity);
+        }
+    }
+
+    private int lowerBound(int day, long id) {
+        return lowerBound(day, id, size);
+    }
+
+    private int lowerBound(int day, long id, int end) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(days[mid], ids[mid], day, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(int day1, long id1, int day2, long id2) {
+        return day1 != day2 ? Integer.compare(day1, day2) : Long.compare(id1, id2);
+    }
+
+    static int toEpochDay(Date date) {
+        return (int) Instant.ofEpochMilli(date.getTime()).atZone(ZONE).toLocalDate().toEpochDay();
+    }
+
+    static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE).toInstant());
+    }
+
+    @Data
+    public static class Slice {
+
+        private final long[] ids;
+
+        // Null when the slice is empty
+        private final UserCursor last;
+    }
+
+    private static class Entries {
+
+        private int[] days;
+
+        private long[] ids;
+
+        private int size;
+
+        Entries(int capacity) {
+            days = new int[Math.max(capacity, 16)];
+            ids = new long[Math.max(capacity, 16)];
+        }
+
+        void add(int day, long id) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size + (size >> 1));
+                ids = Arrays.copyOf(ids, size + (size >> 1));
+            }
+            days[size] = day;
+            ids[size] = id;
+            size++;
+        }
+
+        void keepLastPerId(LongIntMap removals) {
+            LongIntMap lastPosition = new LongIntMap(size);
+            for (int i = 0; i < size; i++) {
+                lastPosition.put(ids[i], i);
+            }
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (lastPosition.get(ids[i], -1) == i && removals.get(ids[i], NOT_INDEXED) == NOT_INDEXED) {
+                    days[kept] = days[i];
+                    ids[kept] = ids[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        void sort() {
+            quickSort(0, size - 1);
+        }
+
+        private void quickSort(int low, int high) {
+            while (high - low > 16) {
+                int mid = (low + high) >>> 1;
+                int pivotDay = days[mid];
+                long pivotId = ids[mid];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(days[i], ids[i], pivotDay, pivotId) < 0) {
+                        i++;
+                    }
+                    while (compare(days[j], ids[j], pivotDay, pivotId) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (j - low < high - i) {
+                    quickSort(low, j);
+                    low = i;
+                } else {
+                    quickSort(i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && compare(days[j - 1], ids[j - 1], days[j], ids[j]) > 0; j--) {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            int day = days[i];
+            days[i] = days[j];
+            days[j] = day;
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.shard.UserShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Answers "certainly not registered" for most new emails so that sign-ups can skip the uniqueness
+// query. Emails of deleted or changed users stay in the filter as false positives until the next
+// rebuild, which happens at startup and whenever more emails were added than the filter was sized for.
+@Component
+@ConditionalOnProperty(name = "user.email.bloomFilter.enabled", havingValue = "true", matchIfMissing = true)
+public class EmailBloomFilter implements UserIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailBloomFilter.class);
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate loadTransaction;
+
+    private final UserShards userShards;
+
+    private final long expectedInsertions;
+
+    private final double falsePositiveRate;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final AtomicLong added = new AtomicLong();
+
+    private final LongAdder checks = new LongAdder();
+
+    private final LongAdder negatives = new LongAdder();
+
+    // Null until the first load, every email is then a possible duplicate
+    private volatile BloomFilter current;
+
+    // Receives the writes that happen while a rebuild scans the table
+    private volatile BloomFilter next;
+
+    @Autowired
+    public EmailBloomFilter(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                            UserShards userShards,
+                            @Value("${user.email.bloomFilter.expectedInsertions:1000000}") long expectedInsertions,
+                            @Value("${user.email.bloomFilter.falsePositiveRate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        // Not read-only on purpose: the filter must start from the primary, whose commits it follows
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuilding.set(true);
+        try {
+            long start = System.nanoTime();
+            long users = 0;
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                users += userShards.call(shard, () -> loadTransaction.execute(status -> userRepository.count()));
+            }
+            BloomFilter filter = new BloomFilter(Math.max(expectedInsertions, users * 2), falsePositiveRate);
+            next = filter;
+            AtomicLong loaded = new AtomicLong();
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                userShards.run(shard, () -> loadTransaction.executeWithoutResult(status -> {
+                    try (Stream<String> emails = userRepository.streamEmails()) {
+                        emails.forEach(email -> {
+                            filter.add(normalize(email));
+                            loaded.incrementAndGet();
+                        });
+                    }
+                }));
+            }
+            added.set(loaded.get());
+            current = filter;
+            next = null;
+            log.info("Email Bloom filter loaded {} emails in {} ms, {} bytes", loaded.get(),
+                    (System.nanoTime() - start) / 1_000_000, filter.memoryFootprintBytes());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    public boolean mightContain(String email) {
+        checks.increment();
+        BloomFilter filter = current;
+        if (filter == null || filter.mightContain(normalize(email))) {
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    public long getNegatives() {
+        return negatives.sum();
+    }
+
+    public long memoryFootprintBytes() {
+        BloomFilter filter = current;
+        return filter == null ? 0 : filter.memoryFootprintBytes();
+    }
+
+    @Override
+    public void apply(UserIndexChanges changes) {
+        BloomFilter filter = current;
+        BloomFilter pending = next;
+        for (User user : changes.getSaved()) {
+            if (user.getEmail() == null) {
+                continue;
+            }
+            String email = normalize(user.getEmail());
+            if (filter != null) {
+                filter.add(email);
+            }
+            if (pending != null) {
+                pending.add(email);
+            }
+            added.incrementAndGet();
+        }
+        if (filter != null && added.get() > filter.getCapacity() && rebuilding.compareAndSet(false, true)) {
+            rebuildInBackground();
+        }
+    }
+
+    private void rebuildInBackground() {
+        Thread thread = new Thread(() -> {
+            try {
+                load();
+            } catch (RuntimeException e) {
+                log.error("Email Bloom filter rebuild failed", e);
+            }
+        }, "email-bloom-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Case-insensitive, so that the filter also covers MySQL's case-insensitive unique index
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
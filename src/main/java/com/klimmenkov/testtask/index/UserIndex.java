@@ -0,0 +1,6 @@
+package com.klimmenkov.testtask.index;
+
+public interface UserIndex {
+
+    void apply(UserIndexChanges changes);
+}
@@ -0,0 +1,15 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class UserIndexChanges {
+
+    private final List<User> saved = new ArrayList<>();
+
+    private final List<Long> removedIds = new ArrayList<>();
+}
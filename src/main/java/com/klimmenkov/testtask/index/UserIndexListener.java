@@ -0,0 +1,29 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class UserIndexListener {
+
+    private final ObjectProvider<UserIndexSynchronizer> synchronizer;
+
+    @Autowired
+    public UserIndexListener(ObjectProvider<UserIndexSynchronizer> synchronizer) {
+        this.synchronizer = synchronizer;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(User user) {
+        synchronizer.ifAvailable(s -> s.saved(user));
+    }
+
+    @PostRemove
+    public void onRemove(User user) {
+        synchronizer.ifAvailable(s -> s.removed(user.getId()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component
+public class UserIndexSynchronizer {
+
+    private final List<UserIndex> indexes;
+
+    @Autowired
+    public UserIndexSynchronizer(ObjectProvider<UserIndex> indexes) {
+        this.indexes = indexes.orderedStream().toList();
+    }
+
+    public void saved(User user) {
+        record(changes -> changes.getSaved().add(user));
+    }
+
+    public void removed(Long userId) {
+        record(changes -> changes.getRemovedIds().add(userId));
+    }
+
+    public void removed(Collection<Long> userIds) {
+        record(changes -> changes.getRemovedIds().addAll(userIds));
+    }
+
+    private void record(Consumer<UserIndexChanges> change) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            UserIndexChanges changes = new UserIndexChanges();
+            change.accept(changes);
+            apply(changes);
+            return;
+        }
+
+        UserIndexChanges changes = (UserIndexChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new UserIndexChanges();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new AfterCommit(changes));
+        }
+        change.accept(changes);
+    }
+
+    private void apply(UserIndexChanges changes) {
+        for (UserIndex index : indexes) {
+            index.apply(changes);
+        }
+    }
+
+    private class AfterCommit implements TransactionSynchronization {
+
+        private final UserIndexChanges changes;
+
+        AfterCommit(UserIndexChanges changes) {
+            this.changes = changes;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UserIndexSynchronizer.this);
+            if (status == STATUS_COMMITTED) {
+                apply(changes);
+            }
+        }
+    }
+}
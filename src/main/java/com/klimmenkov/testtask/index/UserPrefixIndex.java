@@ -0,0 +1,684 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.shard.UserShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Sorted (token, user ID) entries over the words of firstName and lastName and the whole email,
+// lowercased and without diacritics. Tokens are stored once as UTF-8 in a shared byte pool, so an
+// entry costs a long and two ints. Writes go to a small sorted delta that is merged into the arrays
+// once it reaches an eighth of them.
+@Component
+@ConditionalOnProperty(name = "user.index.prefix.enabled", havingValue = "true")
+public class UserPrefixIndex implements UserIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserPrefixIndex.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final byte[][] NO_TOKENS = new byte[0][];
+
+    private static final byte[] NO_PREFIX = new byte[0];
+
+    // Entries a search looks at before it returns what it has found, bounds short prefixes like "a b"
+    private static final int MAX_SCANNED = 20_000;
+
+    private static final int MIN_DELTA_SIZE = 4096;
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate loadTransaction;
+
+    private final UserShards userShards;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Segment segment = Segment.EMPTY;
+
+    // Current tokens of the users written since the segment was built, removed users have none.
+    // Segment entries of these users are ignored.
+    private final Map<Long, byte[][]> changedTokens = new HashMap<>();
+
+    private final TreeMap<byte[], TreeSet<Long>> changedEntries = new TreeMap<>(Arrays::compareUnsigned);
+
+    private int changedEntryCount;
+
+    // Changes committed while load() scans the database, replayed on top of what it read
+    private List<UserIndexChanges> pending;
+
+    private volatile boolean ready;
+
+    @Autowired
+    public UserPrefixIndex(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                           UserShards userShards) {
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        // Not read-only on purpose: the index must start from the primary, whose commits it follows
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Scans and builds the segment without holding the lock, so commits are never kept waiting for
+    // the database. The lock is only taken to start buffering and to swap in the result.
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        setPending(new ArrayList<>());
+        boolean loaded = false;
+        try {
+            Entries entries = new Entries(1024);
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                userShards.run(shard, () -> loadTransaction.executeWithoutResult(status -> {
+                    try (Stream<Object[]> rows = userRepository.streamIdsNamesAndEmails()) {
+                        rows.forEach(row -> {
+                            for (byte[] token : tokens((String) row[1], (String) row[2], (String) row[3])) {
+                                entries.add(token, (Long) row[0]);
+                            }
+                        });
+                    }
+                }));
+            }
+            entries.sort();
+            SegmentBuilder builder = new SegmentBuilder(entries.size);
+            for (int i = 0; i < entries.size; i++) {
+                builder.add(entries.tokens[i], 0, entries.tokens[i].length, entries.ids[i]);
+            }
+            Segment built = builder.build();
+
+            lock.writeLock().lock();
+            try {
+                segment = built;
+                changedTokens.clear();
+                changedEntries.clear();
+                changedEntryCount = 0;
+                for (UserIndexChanges changes : pending) {
+                    applyLocked(changes, savedTokens(changes));
+                }
+                pending = null;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loaded = true;
+            log.info("Prefix index loaded {} entries in {} ms, {} bytes", built.ids.length,
+                    (System.nanoTime() - start) / 1_000_000, built.memoryFootprintBytes());
+        } finally {
+            if (!loaded) {
+                setPending(null);
+            }
+        }
+    }
+
+    private void setPending(List<UserIndexChanges> changes) {
+        lock.writeLock().lock();
+        try {
+            pending = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // IDs of users having a token that starts with each word of the query. The word with the fewest
+    // entries is scanned and the others are checked per user, so results are ordered by the token
+    // matching that word, then by ID.
+    public long[] search(String query, int limit) {
+        byte[][] terms = queryTerms(query);
+        if (terms.length == 0) {
+            return new long[0];
+        }
+
+        long[] found = new long[limit];
+        int[] count = new int[2];
+        lock.readLock().lock();
+        try {
+            int driver = 0;
+            for (int i = 1; i < terms.length; i++) {
+                if (segment.entriesStartingWith(terms[i]) < segment.entriesStartingWith(terms[driver])) {
+                    driver = i;
+                }
+            }
+            int scanned = driver;
+            forEachEntry(terms[scanned], (token, from, to, id) -> {
+                if (++count[1] > MAX_SCANNED) {
+                    return false;
+                }
+                for (int i = 0; i < count[0]; i++) {
+                    if (found[i] == id) {
+                        return true;
+                    }
+                }
+                if (matchesAll(id, terms, scanned)) {
+                    found[count[0]++] = id;
+                }
+                return count[0] < limit;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.copyOf(found, count[0]);
+    }
+
+    // The merged segment only, the delta adds at most an eighth of it on top
+    public long memoryFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            return segment.memoryFootprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(UserIndexChanges changes) {
+        List<byte[][]> savedTokens = savedTokens(changes);
+
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(changes);
+            } else {
+                applyLocked(changes, savedTokens);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<byte[][]> savedTokens(UserIndexChanges changes) {
+        List<byte[][]> savedTokens = new ArrayList<>(changes.getSaved().size());
+        for (User user : changes.getSaved()) {
+            savedTokens.add(tokens(user.getFirstName(), user.getLastName(), user.getEmail()));
+        }
+        return savedTokens;
+    }
+
+    private void applyLocked(UserIndexChanges changes, List<byte[][]> savedTokens) {
+        for (int i = 0; i < savedTokens.size(); i++) {
+            replace(changes.getSaved().get(i).getId(), savedTokens.get(i));
+        }
+        for (Long userId : changes.getRemovedIds()) {
+            replace(userId, NO_TOKENS);
+        }
+        if (changedEntryCount + changedTokens.size() > Math.max(MIN_DELTA_SIZE, segment.ids.length / 8)) {
+            merge();
+        }
+    }
+
+    private void replace(long id, byte[][] tokens) {
+        byte[][] previous = changedTokens.put(id, tokens);
+        if (previous != null) {
+            for (byte[] token : previous) {
+                TreeSet<Long> ids = changedEntries.get(token);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    changedEntries.remove(token);
+                }
+                changedEntryCount--;
+            }
+        }
+        for (byte[] token : tokens) {
+            changedEntries.computeIfAbsent(token, key -> new TreeSet<>()).add(id);
+            changedEntryCount++;
+        }
+    }
+
+    private void merge() {
+        SegmentBuilder builder = new SegmentBuilder(segment.ids.length + changedEntryCount);
+        forEachEntry(NO_PREFIX, (token, from, to, id) -> {
+            builder.add(token, from, to, id);
+            return true;
+        });
+        segment = builder.build();
+        changedTokens.clear();
+        changedEntries.clear();
+        changedEntryCount = 0;
+    }
+
+    // Visits the live entries whose token starts with prefix in (token, ID) order, from the segment
+    // and the delta, until the visitor returns false
+    private void forEachEntry(byte[] prefix, EntryVisitor visitor) {
+        Segment current = segment;
+        int token = current.lowerBound(prefix);
+        Iterator<Map.Entry<byte[], TreeSet<Long>>> changed = changedEntries.tailMap(prefix, true).entrySet().iterator();
+        Map.Entry<byte[], TreeSet<Long>> next = nextChanged(changed, prefix);
+
+        while (true) {
+            boolean inSegment = token < current.tokenCount() && current.startsWith(token, prefix);
+            if (!inSegment && next == null) {
+                return;
+            }
+            int order = !inSegment ? 1 : next == null ? -1 : Arrays.compareUnsigned(current.pool,
+                    current.tokenStart[token], current.tokenStart[token + 1], next.getKey(), 0, next.getKey().length);
+            int from = current.tokenStart[Math.min(token, current.tokenCount())];
+            int to = inSegment ? current.tokenStart[token + 1] : from;
+            int entry = inSegment && order <= 0 ? current.firstEntry[token] : 0;
+            int lastEntry = inSegment && order <= 0 ? current.firstEntry[token + 1] : 0;
+            Iterator<Long> changedIds = order >= 0 ? next.getValue().iterator() : null;
+            Long changedId = changedIds != null && changedIds.hasNext() ? changedIds.next() : null;
+
+            // Segment and delta IDs of one token are disjoint: segment entries of changed users are skipped
+            while (entry < lastEntry || changedId != null) {
+                if (entry < lastEntry && (changedId == null || current.ids[entry] < changedId)) {
+                    long id = current.ids[entry++];
+                    if (!changedTokens.containsKey(id) && !visitor.visit(current.pool, from, to, id)) {
+                        return;
+                    }
+                } else {
+                    byte[] key = next.getKey();
+                    if (!visitor.visit(key, 0, key.length, changedId)) {
+                        return;
+                    }
+                    changedId = changedIds.hasNext() ? changedIds.next() : null;
+                }
+            }
+            if (order <= 0) {
+                token++;
+            }
+            if (order >= 0) {
+                next = nextChanged(changed, prefix);
+            }
+        }
+    }
+
+    private static Map.Entry<byte[], TreeSet<Long>> nextChanged(Iterator<Map.Entry<byte[], TreeSet<Long>>> changed,
+                                                                byte[] prefix) {
+        if (!changed.hasNext()) {
+            return null;
+        }
+        Map.Entry<byte[], TreeSet<Long>> next = changed.next();
+        return startsWith(next.getKey(), 0, next.getKey().length, prefix) ? next : null;
+    }
+
+    private boolean matchesAll(long id, byte[][] terms, int matched) {
+        for (int i = 0; i < terms.length; i++) {
+            if (i != matched && !hasTokenStartingWith(id, terms[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasTokenStartingWith(long id, byte[] prefix) {
+        byte[][] tokens = changedTokens.get(id);
+        if (tokens != null) {
+            for (byte[] token : tokens) {
+                if (startsWith(token, 0, token.length, prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        Segment current = segment;
+        for (int i = current.firstPositionOf(id); i < current.byId.length && current.ids[current.byId[i]] == id; i++) {
+            if (current.startsWith(current.tokenOf(current.byId[i]), prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static byte[][] tokens(String firstName, String lastName, String email) {
+        Set<String> tokens = new LinkedHashSet<>();
+        addWords(tokens, firstName);
+        addWords(tokens, lastName);
+        if (email != null && !email.isBlank()) {
+            tokens.add(normalize(email.trim()));
+        }
+        return toBytes(tokens);
+    }
+
+    // Hyphenated names are indexed whole and per part, so "jane" finds "Mary-Jane"
+    private static void addWords(Set<String> tokens, String name) {
+        if (name == null) {
+            return;
+        }
+        for (String word : WHITESPACE.split(normalize(name.trim()))) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            tokens.add(word);
+            if (word.indexOf('-') >= 0) {
+                for (String part : word.split("-")) {
+                    if (!part.isEmpty()) {
+                        tokens.add(part);
+                    }
+                }
+            }
+        }
+    }
+
+    static byte[][] queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) {
+            for (String word : WHITESPACE.split(normalize(query.trim()))) {
+                if (!word.isEmpty()) {
+                    terms.add(word);
+                }
+            }
+        }
+        return toBytes(terms);
+    }
+
+    static String normalize(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[][] toBytes(Set<String> tokens) {
+        byte[][] bytes = new byte[tokens.size()][];
+        int i = 0;
+        for (String token : tokens) {
+            bytes[i++] = token.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static boolean startsWith(byte[] bytes, int from, int to, byte[] prefix) {
+        return to - from >= prefix.length && Arrays.equals(bytes, from, from + prefix.length, prefix, 0, prefix.length);
+    }
+
+    @FunctionalInterface
+    private interface EntryVisitor {
+
+        boolean visit(byte[] token, int from, int to, long id);
+    }
+
+    private static final class Segment {
+
+        static final Segment EMPTY = new SegmentBuilder(0).build();
+
+        // Distinct tokens in order, token t is pool[tokenStart[t], tokenStart[t + 1])
+        final byte[] pool;
+
+        final int[] tokenStart;
+
+        // Entries of token t are ids[firstEntry[t]] to ids[firstEntry[t + 1] - 1], ascending
+        final int[] firstEntry;
+
+        final long[] ids;
+
+        // Entry positions ordered by user ID, to find the tokens of one user
+        final int[] byId;
+
+        Segment(byte[] pool, int[] tokenStart, int[] firstEntry, long[] ids, int[] byId) {
+            this.pool = pool;
+            this.tokenStart = tokenStart;
+            this.firstEntry = firstEntry;
+            this.ids = ids;
+            this.byId = byId;
+        }
+
+        int tokenCount() {
+            return tokenStart.length - 1;
+        }
+
+        boolean startsWith(int token, byte[] prefix) {
+            return UserPrefixIndex.startsWith(pool, tokenStart[token], tokenStart[token + 1], prefix);
+        }
+
+        // First token not ordered before prefix
+        int lowerBound(byte[] prefix) {
+            int low = 0;
+            int high = tokenCount();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Arrays.compareUnsigned(pool, tokenStart[mid], tokenStart[mid + 1], prefix, 0, prefix.length) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int entriesStartingWith(byte[] prefix) {
+            int from = lowerBound(prefix);
+            int low = from;
+            int high = tokenCount();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (startsWith(mid, prefix)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return firstEntry[low] - firstEntry[from];
+        }
+
+        int tokenOf(int entry) {
+            int low = 0;
+            int high = tokenCount() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (firstEntry[mid] <= entry) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        int firstPositionOf(long id) {
+            int low = 0;
+            int high = byId.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ids[byId[mid]] < id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        long memoryFootprintBytes() {
+            return pool.length + (long) (tokenStart.length + firstEntry.length + byId.length) * Integer.BYTES
+                    + (long) ids.length * Long.BYTES;
+        }
+    }
+
+    // Takes entries in (token, ID) order
+    private static final class SegmentBuilder {
+
+        private byte[] pool;
+
+        private int poolSize;
+
+        private int[] tokenStart;
+
+        private int[] firstEntry;
+
+        private int tokens;
+
+        private final long[] ids;
+
+        private int size;
+
+        SegmentBuilder(int maxEntries) {
+            pool = new byte[Math.max(16, maxEntries * 4)];
+            tokenStart = new int[Math.max(16, maxEntries / 2)];
+            firstEntry = new int[tokenStart.length];
+            ids = new long[maxEntries];
+        }
+
+        void add(byte[] token, int from, int to, long id) {
+            boolean sameToken = tokens > 0
+                    && Arrays.equals(pool, tokenStart[tokens - 1], poolSize, token, from, to);
+            if (sameToken && ids[size - 1] == id) {
+                return;
+            }
+            if (!sameToken) {
+                if (tokens + 1 >= tokenStart.length) {
+                    tokenStart = Arrays.copyOf(tokenStart, tokenStart.length * 2);
+                    firstEntry = Arrays.copyOf(firstEntry, firstEntry.length * 2);
+                }
+                if (poolSize + to - from > pool.length) {
+                    pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + to - from));
+                }
+                tokenStart[tokens] = poolSize;
+                firstEntry[tokens] = size;
+                tokens++;
+                System.arraycopy(token, from, pool, poolSize, to - from);
+                poolSize += to - from;
+            }
+            ids[size++] = id;
+        }
+
+        Segment build() {
+            int[] starts = Arrays.copyOf(tokenStart, tokens + 1);
+            int[] firsts = Arrays.copyOf(firstEntry, tokens + 1);
+            starts[tokens] = poolSize;
+            firsts[tokens] = size;
+            long[] entryIds = Arrays.copyOf(ids, size);
+            int[] byId = new int[size];
+            for (int i = 0; i < size; i++) {
+                byId[i] = i;
+            }
+            sortById(byId, entryIds, 0, size - 1);
+            return new Segment(Arrays.copyOf(pool, poolSize), starts, firsts, entryIds, byId);
+        }
+
+        private static void sortById(int[] positions, long[] ids, int low, int high) {
+            while (high - low > 16) {
+                long pivot = ids[positions[(low + high) >>> 1]];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (ids[positions[i]] < pivot) {
+                        i++;
+                    }
+                    while (ids[positions[j]] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int position = positions[i];
+                        positions[i++] = positions[j];
+                        positions[j--] = position;
+                    }
+                }
+                if (j - low < high - i) {
+                    sortById(positions, ids, low, j);
+                    low = i;
+                } else {
+                    sortById(positions, ids, i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && ids[positions[j - 1]] > ids[positions[j]]; j--) {
+                    int position = positions[j];
+                    positions[j] = positions[j - 1];
+                    positions[j - 1] = position;
+                }
+            }
+        }
+    }
+
+    private static class Entries {
+
+        private byte[][] tokens;
+
+        private long[] ids;
+
+        private int size;
+
+        Entries(int capacity) {
+            tokens = new byte[Math.max(capacity, 16)][];
+            ids = new long[Math.max(capacity, 16)];
+        }
+
+        void add(byte[] token, long id) {
+            if (size == ids.length) {
+                tokens = Arrays.copyOf(tokens, size + (size >> 1));
+                ids = Arrays.copyOf(ids, size + (size >> 1));
+            }
+            tokens[size] = token;
+            ids[size] = id;
+            size++;
+        }
+
+        void sort() {
+            quickSort(0, size - 1);
+        }
+
+        private void quickSort(int low, int high) {
+            while (high - low > 16) {
+                int mid = (low + high) >>> 1;
+                byte[] pivotToken = tokens[mid];
+                long pivotId = ids[mid];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(tokens[i], ids[i], pivotToken, pivotId) < 0) {
+                        i++;
+                    }
+                    while (compare(tokens[j], ids[j], pivotToken, pivotId) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (j - low < high - i) {
+                    quickSort(low, j);
+                    low = i;
+                } else {
+                    quickSort(i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && compare(tokens[j - 1], ids[j - 1], tokens[j], ids[j]) > 0; j--) {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private static int compare(byte[] token1, long id1, byte[] token2, long id2) {
+            int order = Arrays.compareUnsigned(token1, token2);
+            return order != 0 ? order : Long.compare(id1, id2);
+        }
+
+        private void swap(int i, int j) {
+            byte[] token = tokens[i];
+            tokens[i] = tokens[j];
+            tokens[j] = token;
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+}
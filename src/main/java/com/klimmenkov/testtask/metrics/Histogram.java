@@ -0,0 +1,68 @@
+package com.klimmenkov.testtask.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram {
+
+    private final long[] bounds;
+
+    // buckets[i] counts values in (bounds[i - 1], bounds[i]], the last one everything above bounds
+    private final LongAdder[] buckets;
+
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram(long[] bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        int index = Arrays.binarySearch(bounds, value);
+        buckets[index < 0 ? -index - 1 : index].increment();
+        sum.add(value);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(bounds, counts, sum.sum());
+    }
+
+    public record Snapshot(long[] bounds, long[] counts, long sum) {
+
+        public long count() {
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        // Linear interpolation inside the bucket holding the rank, capped at the highest bound
+        public double quantile(double q) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            double rank = q * count;
+            long below = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 && below + counts[i] >= rank) {
+                    if (i == bounds.length) {
+                        return bounds[bounds.length - 1];
+                    }
+                    long lower = i == 0 ? 0 : bounds[i - 1];
+                    return lower + (bounds[i] - lower) * Math.max(0, rank - below) / counts[i];
+                }
+                below += counts[i];
+            }
+            return bounds[bounds.length - 1];
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.klimmenkov.testtask.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component
+public class MetricsRegistry {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long[] LATENCY_BOUNDS = Arrays.stream(new double[]{0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25,
+                    50, 100, 250, 500, 1000, 2500, 5000, 10000})
+            .mapToLong(millis -> (long) (millis * TimeUnit.MILLISECONDS.toNanos(1)))
+            .toArray();
+
+    private static final long[] STATEMENT_BOUNDS = {0, 1, 2, 3, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+    // Keyed by handler and service method, the labels are built once on the first call
+    private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final Map<Method, ServiceCall> serviceCalls = new ConcurrentHashMap<>();
+
+    public Endpoint endpoint(Method handler, String httpMethod, String pattern) {
+        Endpoint endpoint = endpoints.get(handler);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(handler,
+                    key -> new Endpoint(httpMethod + " " + pattern, key.getName()));
+        }
+        return endpoint;
+    }
+
+    public void recordServiceCall(Method method, long nanos) {
+        ServiceCall serviceCall = serviceCalls.get(method);
+        if (serviceCall == null) {
+            serviceCall = serviceCalls.computeIfAbsent(method, ServiceCall::new);
+        }
+        serviceCall.duration.record(nanos);
+    }
+
+    public void writeTo(PrometheusWriter writer) {
+        writer.family("user_http_request_duration_seconds", "histogram", "Time spent handling a request");
+        endpoints.values().forEach(endpoint -> writer.histogram("user_http_request_duration_seconds",
+                endpoint.duration.snapshot(), NANOS_PER_SECOND, endpoint.labels));
+        writer.family("user_http_request_duration_quantile_seconds", "gauge",
+                "Request latency quantiles estimated from the histogram buckets");
+        endpoints.values().forEach(endpoint -> writer.quantiles("user_http_request_duration_quantile_seconds",
+                endpoint.duration.snapshot(), NANOS_PER_SECOND, endpoint.labels));
+        writer.family("user_http_request_sql_statements", "histogram", "SQL statements prepared per request");
+        endpoints.values().forEach(endpoint -> writer.histogram("user_http_request_sql_statements",
+                endpoint.statements.snapshot(), 1, endpoint.labels));
+        writer.family("user_http_request_sql_round_trips", "histogram",
+                "Statement and batch executions sent to the database per request");
+        endpoints.values().forEach(endpoint -> writer.histogram("user_http_request_sql_round_trips",
+                endpoint.roundTrips.snapshot(), 1, endpoint.labels));
+
+        writer.family("user_service_call_duration_seconds", "histogram", "Time spent in UserService methods");
+        serviceCalls.values().forEach(call -> writer.histogram("user_service_call_duration_seconds",
+                call.duration.snapshot(), NANOS_PER_SECOND, call.labels));
+        writer.family("user_service_call_duration_quantile_seconds", "gauge",
+                "UserService latency quantiles estimated from the histogram buckets");
+        serviceCalls.values().forEach(call -> writer.quantiles("user_service_call_duration_quantile_seconds",
+                call.duration.snapshot(), NANOS_PER_SECOND, call.labels));
+
+        writer.family("user_sql_statements_total", "counter", "SQL statements prepared by Hibernate")
+                .sample("user_sql_statements_total", SqlStatementCounter.statements());
+        writer.family("user_sql_round_trips_total", "counter",
+                        "Statement and batch executions sent to the database by Hibernate")
+                .sample("user_sql_round_trips_total", SqlStatementCounter.roundTrips());
+    }
+
+    public static class Endpoint {
+
+        private final String[] labels;
+
+        private final Histogram duration = new Histogram(LATENCY_BOUNDS);
+
+        private final Histogram statements = new Histogram(STATEMENT_BOUNDS);
+
+        private final Histogram roundTrips = new Histogram(STATEMENT_BOUNDS);
+
+        private Endpoint(String endpoint, String handler) {
+            this.labels = new String[]{"endpoint", endpoint, "handler", handler};
+        }
+
+        public void record(long nanos, long[] sqlCounts) {
+            duration.record(nanos);
+            if (sqlCounts != null) {
+                statements.record(sqlCounts[0]);
+                roundTrips.record(sqlCounts[1]);
+            }
+        }
+    }
+
+    private static class ServiceCall {
+
+        private final String[] labels;
+
+        private final Histogram duration = new Histogram(LATENCY_BOUNDS);
+
+        private ServiceCall(Method method) {
+            String parameters = Arrays.stream(method.getParameterTypes())
+                    .map(Class::getSimpleName)
+                    .collect(Collectors.joining(","));
+            this.labels = new String[]{"method", method.getName() + "(" + parameters + ")"};
+        }
+    }
+}
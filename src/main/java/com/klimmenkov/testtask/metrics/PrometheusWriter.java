@@ -0,0 +1,93 @@
+package com.klimmenkov.testtask.metrics;
+
+import java.math.BigDecimal;
+
+// Prometheus text exposition format 0.0.4
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain;version=0.0.4;charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        labels(labels);
+        out.append(' ').append(number(value)).append('\n');
+        return this;
+    }
+
+    // Writes buckets, sum and count of a family declared as histogram, values divided by unit
+    public PrometheusWriter histogram(String name, Histogram.Snapshot snapshot, double unit, String... labels) {
+        long[] bounds = snapshot.bounds();
+        long[] counts = snapshot.counts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket");
+            labels(labels, "le", i < bounds.length ? number(bounds[i] / unit) : "+Inf");
+            out.append(' ').append(cumulative).append('\n');
+        }
+        sample(name + "_sum", snapshot.sum() / unit, labels);
+        sample(name + "_count", cumulative, labels);
+        return this;
+    }
+
+    // Writes p50, p95 and p99 of a family declared as gauge, values divided by unit
+    public PrometheusWriter quantiles(String name, Histogram.Snapshot snapshot, double unit, String... labels) {
+        for (double quantile : QUANTILES) {
+            out.append(name);
+            labels(labels, "quantile", number(quantile));
+            out.append(' ').append(number(snapshot.quantile(quantile) / unit)).append('\n');
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void labels(String[] labels, String... extra) {
+        if (labels.length == 0 && extra.length == 0) {
+            return;
+        }
+        out.append('{');
+        String separator = "";
+        for (String[] pairs : new String[][]{labels, extra}) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                out.append(separator).append(pairs[i]).append("=\"");
+                escape(pairs[i + 1]);
+                out.append('"');
+                separator = ",";
+            }
+        }
+        out.append('}');
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.klimmenkov.testtask.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Hibernate creates its session listeners itself, so the counts live here rather than in a bean
+public final class SqlStatementCounter {
+
+    private static final LongAdder statements = new LongAdder();
+
+    private static final LongAdder roundTrips = new LongAdder();
+
+    private static final ThreadLocal<long[]> request = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    static void statementPrepared() {
+        statements.increment();
+        long[] counts = request.get();
+        if (counts != null) {
+            counts[0]++;
+        }
+    }
+
+    static void statementExecuted() {
+        roundTrips.increment();
+        long[] counts = request.get();
+        if (counts != null) {
+            counts[1]++;
+        }
+    }
+
+    public static long statements() {
+        return statements.sum();
+    }
+
+    public static long roundTrips() {
+        return roundTrips.sum();
+    }
+
+    // Starts counting the statements issued by the current thread, {statements, round trips}
+    public static void begin() {
+        request.set(new long[2]);
+    }
+
+    public static long[] end() {
+        long[] counts = request.get();
+        request.remove();
+        return counts;
+    }
+}
@@ -0,0 +1,23 @@
+package com.klimmenkov.testtask.metrics;
+
+import org.hibernate.SessionEventListener;
+
+// Registered for every session through hibernate.session.events.auto
+public class SqlStatementListener implements SessionEventListener {
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        SqlStatementCounter.statementPrepared();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlStatementCounter.statementExecuted();
+    }
+
+    // A JDBC batch goes to the database in one round trip however many statements it holds
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlStatementCounter.statementExecuted();
+    }
+}
@@ -0,0 +1,36 @@
+package com.klimmenkov.testtask.metrics;
+
+import com.klimmenkov.testtask.shard.ShardContext;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+public class UserServiceMetricsAspect {
+
+    private final MetricsRegistry metricsRegistry;
+
+    @Autowired
+    public UserServiceMetricsAspect(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Around("execution(* com.klimmenkov.testtask.service.UserService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        // A call the sharded service makes on a shard is part of a call already being timed
+        if (ShardContext.isBound()) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            metricsRegistry.recordServiceCall(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                    System.nanoTime() - start);
+        }
+    }
+}
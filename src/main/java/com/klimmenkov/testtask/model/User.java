@@ -1,5 +1,8 @@
 package com.klimmenkov.testtask.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.klimmenkov.testtask.index.UserIndexListener;
+import com.klimmenkov.testtask.shard.ShardedSequenceGenerator;
 import com.klimmenkov.testtask.validator.AgeConstraint;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
@@ -8,17 +11,30 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Past;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.util.Date;
 
 @Entity
 @Data
-@Table(name = "users")
+@DynamicUpdate
+@EntityListeners(UserIndexListener.class)
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_birth_date_id", columnList = "birth_date, id"),
+        @Index(name = "uk_users_email", columnList = "email", unique = true)
+})
 @NoArgsConstructor
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @GenericGenerator(name = "users_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "users_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")
+    })
     private Long id;
 
     @Email(message = "Enter valid email. Use correct pattern: example@example.com")
@@ -33,12 +49,18 @@ public class User {
 
     @Past
     @AgeConstraint
+    @Column(name = "birth_date")
     private Date birthDate;
 
     private String address;
 
     private String phoneNumber;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     public User(String email, String firstName, String lastName, @NotNull Date birthDate, String address, String phoneNumber) {
         this.email = email;
         this.firstName = firstName;
@@ -0,0 +1,40 @@
+package com.klimmenkov.testtask.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+// One row per committed create, update or delete. The sequence is an identity column, so it follows
+// insert order across all nodes.
+@Entity
+@Data
+@Table(name = "user_changes", indexes = {
+        @Index(name = "idx_user_changes_changed_at", columnList = "changed_at")
+})
+@NoArgsConstructor
+public class UserChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private Type type;
+
+    // The user's version after the change, the version it had when deleted
+    @Column(name = "user_version")
+    private Long version;
+
+    @Column(name = "changed_at", nullable = false)
+    private Date changedAt;
+}
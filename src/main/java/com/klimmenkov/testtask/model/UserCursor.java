@@ -0,0 +1,46 @@
+package com.klimmenkov.testtask.model;
+
+import com.klimmenkov.testtask.exception.InvalidCursorException;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+@Data
+public class UserCursor {
+
+    private final Date birthDate;
+
+    private final Long id;
+
+    public static UserCursor first(Date fromDate) {
+        return new UserCursor(fromDate, Long.MIN_VALUE);
+    }
+
+    // Where a page of the range from fromDate starts, a cursor from before the range starts it over
+    public static UserCursor within(Date fromDate, UserCursor after) {
+        return after == null || after.getBirthDate().before(fromDate) ? first(fromDate) : after;
+    }
+
+    public static UserCursor after(User user) {
+        return new UserCursor(user.getBirthDate(), user.getId());
+    }
+
+    public static UserCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = decoded.indexOf(':');
+            long birthDate = Long.parseLong(decoded.substring(0, separator));
+            long id = Long.parseLong(decoded.substring(separator + 1));
+            return new UserCursor(new Date(birthDate), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid page cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = birthDate.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,101 @@
+package com.klimmenkov.testtask.model;
+
+import com.klimmenkov.testtask.exception.InvalidUserFieldException;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+public enum UserField {
+
+    EMAIL("email", UserField::toText, (user, value) -> user.setEmail((String) value)),
+    FIRST_NAME("firstName", UserField::toText, (user, value) -> user.setFirstName((String) value)),
+    LAST_NAME("lastName", UserField::toText, (user, value) -> user.setLastName((String) value)),
+    BIRTH_DATE("birthDate", UserField::toDate, (user, value) -> user.setBirthDate((Date) value)),
+    ADDRESS("address", UserField::toText, (user, value) -> user.setAddress((String) value)),
+    PHONE_NUMBER("phoneNumber", UserField::toText, (user, value) -> user.setPhoneNumber((String) value));
+
+    private static final Map<String, UserField> BY_NAME = new HashMap<>();
+
+    static {
+        for (UserField field : values()) {
+            BY_NAME.put(field.fieldName, field);
+        }
+    }
+
+    private final String fieldName;
+
+    private final Function<Object, Object> coercion;
+
+    private final BiConsumer<User, Object> setter;
+
+    UserField(String fieldName, Function<Object, Object> coercion, BiConsumer<User, Object> setter) {
+        this.fieldName = fieldName;
+        this.coercion = coercion;
+        this.setter = setter;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public static UserField of(String fieldName) {
+        UserField field = BY_NAME.get(fieldName);
+        if (field == null) {
+            throw new InvalidUserFieldException("Unknown field: " + fieldName);
+        }
+        return field;
+    }
+
+    public static void apply(User user, Map<String, Object> updates) {
+        UserField[] fields = new UserField[updates.size()];
+        Object[] values = new Object[updates.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> update : updates.entrySet()) {
+            fields[i] = of(update.getKey());
+            values[i] = fields[i].coerce(update.getValue());
+            i++;
+        }
+
+        for (int j = 0; j < fields.length; j++) {
+            fields[j].setter.accept(user, values[j]);
+        }
+    }
+
+    public Object coerce(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return coercion.apply(value);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidUserFieldException("Invalid value for field " + fieldName + ": " + value);
+        }
+    }
+
+    private static Object toText(Object value) {
+        if (value instanceof String) {
+            return value;
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static Object toDate(Object value) {
+        if (value instanceof Number number) {
+            return new Date(number.longValue());
+        }
+        if (value instanceof String text) {
+            if (text.length() == 10) {
+                return Date.from(LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant());
+            }
+            return Date.from(OffsetDateTime.parse(text).toInstant());
+        }
+        throw new IllegalArgumentException();
+    }
+}
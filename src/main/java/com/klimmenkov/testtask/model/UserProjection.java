@@ -0,0 +1,77 @@
+package com.klimmenkov.testtask.model;
+
+import com.klimmenkov.testtask.exception.InvalidUserFieldException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class UserProjection {
+
+    public static final String ID = "id";
+
+    public static final String BIRTH_DATE = "birthDate";
+
+    private static final Set<String> FIELDS = new LinkedHashSet<>();
+
+    static {
+        FIELDS.add(ID);
+        for (UserField field : UserField.values()) {
+            FIELDS.add(field.getFieldName());
+        }
+        FIELDS.add("version");
+    }
+
+    private UserProjection() {
+    }
+
+    public static List<String> parse(String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!FIELDS.contains(name)) {
+                throw new InvalidUserFieldException("Unknown field: " + name);
+            }
+            selected.add(name);
+        }
+        if (selected.isEmpty()) {
+            throw new InvalidUserFieldException("No fields selected, use any of: " + String.join(",", FIELDS));
+        }
+        return List.copyOf(selected);
+    }
+
+    public static List<String> withKeyset(List<String> fields) {
+        if (fields.contains(ID) && fields.contains(BIRTH_DATE)) {
+            return fields;
+        }
+        List<String> withKeyset = new ArrayList<>(fields.size() + 2);
+        withKeyset.addAll(fields);
+        if (!fields.contains(ID)) {
+            withKeyset.add(ID);
+        }
+        if (!fields.contains(BIRTH_DATE)) {
+            withKeyset.add(BIRTH_DATE);
+        }
+        return withKeyset;
+    }
+
+    // Drops the keyset columns withKeyset added to rows
+    public static void retainSelected(List<Map<String, Object>> rows, List<String> fields) {
+        if (fields.contains(ID) && fields.contains(BIRTH_DATE)) {
+            return;
+        }
+        for (Map<String, Object> row : rows) {
+            row.keySet().retainAll(fields);
+        }
+    }
+
+    public static UserCursor cursor(Map<String, Object> row) {
+        return new UserCursor((Date) row.get(BIRTH_DATE), (Long) row.get(ID));
+    }
+}
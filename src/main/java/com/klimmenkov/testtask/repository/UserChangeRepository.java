@@ -0,0 +1,41 @@
+package com.klimmenkov.testtask.repository;
+
+import com.klimmenkov.testtask.model.UserChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface UserChangeRepository extends JpaRepository<UserChange, Long> {
+
+    // One statement per chunk, and the version comes from the row as the transaction sees it
+    @Modifying
+    @Query(value = "insert into user_changes (user_id, change_type, user_version, changed_at) " +
+            "select id, :type, version, :changedAt from users where id in (:ids) order by id", nativeQuery = true)
+    int recordChanges(@Param("ids") Collection<Long> ids,
+                      @Param("type") String type,
+                      @Param("changedAt") Date changedAt);
+
+    @Query("select c from UserChange c where c.seq > :since order by c.seq")
+    List<UserChange> findAfter(@Param("since") long since, Pageable pageable);
+
+    @Query("select min(c.seq) from UserChange c")
+    Long findMinSeq();
+
+    @Query("select max(c.seq) from UserChange c")
+    Long findMaxSeq();
+
+    @Query("select max(c.seq) from UserChange c where c.changedAt < :cutoff")
+    Long findMaxSeqChangedBefore(@Param("cutoff") Date cutoff);
+
+    @Modifying
+    @Query("delete from UserChange c where c.seq > :afterSeq and c.seq <= :upToSeq")
+    int deleteBetween(@Param("afterSeq") long afterSeq, @Param("upToSeq") long upToSeq);
+}
@@ -0,0 +1,26 @@
+package com.klimmenkov.testtask.repository;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+
+// Constraints of the users table, named as in the User mapping and the migrations
+public final class UserConstraints {
+
+    public static final String EMAIL_UNIQUE = "uk_users_email";
+
+    private UserConstraints() {
+    }
+
+    // Drivers report the name with a table or schema prefix, and H2 in upper case with a suffix
+    public static boolean isDuplicateEmail(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String name = violation.getConstraintName();
+                return name != null && name.toLowerCase(Locale.ROOT).contains(EMAIL_UNIQUE);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,15 @@
+package com.klimmenkov.testtask.repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public interface UserProjectionRepository {
+
+    List<Map<String, Object>> findFieldsByBirthDateBetween(List<String> fields, Date fromDate, Date toDate);
+
+    List<Map<String, Object>> findFieldsPageAfter(List<String> fields, Date afterBirthDate, Long afterId,
+                                                  Date toDate, int limit);
+
+    List<Map<String, Object>> findFieldsByIdsInOrder(List<String> fields, long[] ids);
+}
@@ -0,0 +1,105 @@
+package com.klimmenkov.testtask.repository;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserProjection;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tuple queries select only the requested columns and return plain values, so nothing is
+// hydrated into the persistence context or dirty checked.
+public class UserProjectionRepositoryImpl implements UserProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findFieldsByBirthDateBetween(List<String> fields, Date fromDate, Date toDate) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        query.multiselect(selections(user, fields))
+                .where(cb.between(user.get(UserProjection.BIRTH_DATE), fromDate, toDate));
+        return toMaps(entityManager.createQuery(query).getResultList(), fields);
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsPageAfter(List<String> fields, Date afterBirthDate, Long afterId,
+                                                         Date toDate, int limit) {
+        List<String> selected = UserProjection.withKeyset(fields);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        Path<Date> birthDate = user.get(UserProjection.BIRTH_DATE);
+        Path<Long> id = user.get(UserProjection.ID);
+        query.multiselect(selections(user, selected))
+                .where(cb.greaterThanOrEqualTo(birthDate, afterBirthDate),
+                        cb.lessThanOrEqualTo(birthDate, toDate),
+                        cb.or(cb.greaterThan(birthDate, afterBirthDate), cb.greaterThan(id, afterId)))
+                .orderBy(cb.asc(birthDate), cb.asc(id));
+        return toMaps(entityManager.createQuery(query).setMaxResults(limit).getResultList(), selected);
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsByIdsInOrder(List<String> fields, long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        List<String> selected = UserProjection.withKeyset(fields);
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            idList.add(id);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        query.multiselect(selections(user, selected))
+                .where(user.get(UserProjection.ID).in(idList));
+
+        Map<Object, Map<String, Object>> rowsById = new HashMap<>();
+        for (Map<String, Object> row : toMaps(entityManager.createQuery(query).getResultList(), selected)) {
+            rowsById.put(row.get(UserProjection.ID), row);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            Map<String, Object> row = rowsById.get(id);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static List<Selection<?>> selections(Root<User> user, List<String> fields) {
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            selections.add(user.get(field).alias(field));
+        }
+        return selections;
+    }
+
+    private static List<Map<String, Object>> toMaps(List<Tuple> tuples, List<String> fields) {
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                row.put(fields.get(i), tuple.get(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
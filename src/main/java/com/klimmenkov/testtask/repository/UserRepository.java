@@ -1,15 +1,95 @@
 package com.klimmenkov.testtask.repository;
 
 import com.klimmenkov.testtask.model.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserProjectionRepository {
+
+    String STREAM_FETCH_SIZE = "1000";
 
     List<User> findByBirthDateBetween(Date fromDate, Date toDate);
 
+    Optional<User> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    boolean existsByEmailAndIdNot(String email, Long id);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<User> streamByBirthDateBetween(Date fromDate, Date toDate);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select u.email from User u")
+    Stream<String> streamEmails();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select u.id, u.firstName, u.lastName, u.email from User u")
+    Stream<Object[]> streamIdsNamesAndEmails();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select u.id, u.birthDate from User u order by u.birthDate, u.id")
+    Stream<Object[]> streamIdsAndBirthDates();
+
+    @Query("select u from User u " +
+            "where u.birthDate >= :afterBirthDate and u.birthDate <= :toDate " +
+            "and (u.birthDate > :afterBirthDate or u.id > :afterId) " +
+            "order by u.birthDate, u.id")
+    List<User> findPageAfter(@Param("afterBirthDate") Date afterBirthDate,
+                             @Param("afterId") Long afterId,
+                             @Param("toDate") Date toDate,
+                             Pageable pageable);
+
+    // Full scan, only used while the prefix index is disabled. Unlike the index, the whole query must
+    // start one column (no matching per word, "mary jane" does not find "Mary-Jane Smith"), and accents
+    // are not folded.
+    @Query("select u from User u " +
+            "where lower(u.firstName) like :prefix escape '!' or lower(u.lastName) like :prefix escape '!' " +
+            "or lower(u.email) like :prefix escape '!' " +
+            "order by u.id")
+    List<User> findByPrefix(@Param("prefix") String prefix, Pageable pageable);
+
+    @Modifying
+    @Query("update User u set u.email = :email, u.firstName = :firstName, u.lastName = :lastName, " +
+            "u.birthDate = :birthDate, u.address = :address, u.phoneNumber = :phoneNumber, " +
+            "u.version = u.version + 1 " +
+            "where u.id = :id and u.version = :version")
+    int updateIfVersionMatches(@Param("id") Long id,
+                               @Param("version") Long version,
+                               @Param("email") String email,
+                               @Param("firstName") String firstName,
+                               @Param("lastName") String lastName,
+                               @Param("birthDate") Date birthDate,
+                               @Param("address") String address,
+                               @Param("phoneNumber") String phoneNumber);
+
+    long countByBirthDateBetween(Date fromDate, Date toDate);
+
+    @Query("select u.id from User u where u.birthDate between :fromDate and :toDate order by u.birthDate, u.id")
+    List<Long> findIdsByBirthDateBetween(@Param("fromDate") Date fromDate,
+                                         @Param("toDate") Date toDate,
+                                         Pageable pageable);
+
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteAllByIds(@Param("ids") Collection<Long> ids);
 }
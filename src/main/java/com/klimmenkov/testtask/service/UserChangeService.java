@@ -0,0 +1,21 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.dto.UserChangeBatch;
+import com.klimmenkov.testtask.model.UserChange;
+
+import java.util.Collection;
+
+public interface UserChangeService {
+
+    // Joins the caller's transaction, so a change is logged exactly when it commits
+    void record(UserChange.Type type, Collection<Long> userIds);
+
+    // Every shard keeps its own log with its own sequence numbers
+    UserChangeBatch getChanges(int shard, long since, int limit);
+
+    // Sequence number of the newest change, 0 while the log is empty
+    long getLatestSeq(int shard);
+
+    // Returns a handle that cancels the subscription
+    Runnable subscribe(int shard, long since, UserChangeSubscriber subscriber);
+}
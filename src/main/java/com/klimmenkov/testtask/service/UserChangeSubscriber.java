@@ -0,0 +1,15 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.model.UserChange;
+
+import java.util.List;
+
+public interface UserChangeSubscriber {
+
+    // Called in sequence order, with an empty list as a heartbeat. Returning false cancels. May block,
+    // which only holds up this subscription until it is dropped after user.changes.stallTimeout.
+    boolean deliver(List<UserChange> changes);
+
+    // The subscription has ended, e.g. because its position was trimmed
+    void failed(RuntimeException e);
+}
@@ -0,0 +1,15 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.dto.CsvImportResult;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Date;
+
+public interface UserCsvService {
+
+    // Without dates the whole table is written
+    void exportUsers(Date fromDate, Date toDate, Writer writer);
+
+    CsvImportResult importUsers(Reader reader);
+}
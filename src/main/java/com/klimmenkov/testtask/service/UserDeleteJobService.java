@@ -0,0 +1,16 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.dto.DeleteJobStatus;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserDeleteJobService {
+
+    DeleteJobStatus deleteUsersByIds(List<Long> userIds);
+
+    DeleteJobStatus deleteUsersByBirthDateRange(Date fromDate, Date toDate);
+
+    Optional<DeleteJobStatus> getJob(String jobId);
+}
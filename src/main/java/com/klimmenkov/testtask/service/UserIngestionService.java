@@ -0,0 +1,16 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.dto.IngestionStatistics;
+import com.klimmenkov.testtask.dto.IngestionStatus;
+import com.klimmenkov.testtask.model.User;
+
+import java.util.Optional;
+
+public interface UserIngestionService {
+
+    IngestionStatus enqueue(User user);
+
+    Optional<IngestionStatus> getStatus(String ticket);
+
+    IngestionStatistics getStatistics();
+}
@@ -1,20 +1,45 @@
 package com.klimmenkov.testtask.service;
 
+import com.klimmenkov.testtask.dto.BatchCreateResult;
 import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
 
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
 public interface UserService {
     User createUser(User user);
 
-    User updateUser(Long userId, User updatedUser);
+    BatchCreateResult createUsers(List<User> users);
 
-    User partiallyUpdateUser(Long userId, Map<String, Object> updates);
+    User getUser(Long userId);
+
+    User getUserByEmail(String email);
+
+    User updateUser(Long userId, User updatedUser, Long expectedVersion);
+
+    User partiallyUpdateUser(Long userId, Map<String, Object> updates, Long expectedVersion);
 
     void deleteUser(Long userId);
 
     List<User> searchUsersByBirthDateRange(Date fromDate, Date toDate);
 
+    List<User> searchUsersByBirthDateRange(Date fromDate, Date toDate, UserCursor after, int limit);
+
+    List<Map<String, Object>> searchUserFieldsByBirthDateRange(Date fromDate, Date toDate, List<String> fields);
+
+    List<Map<String, Object>> searchUserFieldsByBirthDateRange(Date fromDate, Date toDate, UserCursor after, int limit,
+                                                               List<String> fields);
+
+    List<User> searchUsersByPrefix(String query, int limit);
+
+    OptionalLong countUsersByBirthDateRange(Date fromDate, Date toDate);
+
+    void streamUsersByBirthDateRange(Date fromDate, Date toDate, Consumer<User> consumer);
+
+    void streamUsers(Consumer<User> consumer);
+
 }
@@ -0,0 +1,320 @@
+package com.klimmenkov.testtask.service.impl;
+
+import com.klimmenkov.testtask.dto.UserChangeBatch;
+import com.klimmenkov.testtask.exception.ChangeLogTrimmedException;
+import com.klimmenkov.testtask.model.UserChange;
+import com.klimmenkov.testtask.repository.UserChangeRepository;
+import com.klimmenkov.testtask.service.UserChangeService;
+import com.klimmenkov.testtask.service.UserChangeSubscriber;
+import com.klimmenkov.testtask.shard.ShardContext;
+import com.klimmenkov.testtask.shard.UserShards;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class UserChangeServiceImpl implements UserChangeService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangeServiceImpl.class);
+
+    private final UserChangeRepository userChangeRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readTransaction;
+
+    private final UserShards userShards;
+
+    private final Duration gapTimeout;
+
+    private final Duration pollInterval;
+
+    private final Duration heartbeat;
+
+    private final Duration stallTimeout;
+
+    private final int streamBatchSize;
+
+    private final Duration retention;
+
+    private final Duration trimInterval;
+
+    private final int trimChunkSize;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    // Polling and trimming run on this thread, it never waits for a subscriber
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Runs the deliveries, one at a time per subscription, so a slow subscriber only holds up itself
+    private final ExecutorService delivery = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "user-change-delivery");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public UserChangeServiceImpl(UserChangeRepository userChangeRepository, TransactionTemplate transactionTemplate,
+                                 UserShards userShards,
+                                 @Value("${user.changes.gapTimeout:10s}") Duration gapTimeout,
+                                 @Value("${user.changes.pollInterval:1s}") Duration pollInterval,
+                                 @Value("${user.changes.heartbeat:15s}") Duration heartbeat,
+                                 @Value("${user.changes.stallTimeout:1m}") Duration stallTimeout,
+                                 @Value("${user.changes.streamBatchSize:500}") int streamBatchSize,
+                                 @Value("${user.changes.retention:7d}") Duration retention,
+                                 @Value("${user.changes.trimInterval:1h}") Duration trimInterval,
+                                 @Value("${user.changes.trimChunkSize:10000}") int trimChunkSize) {
+        this.userChangeRepository = userChangeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.readTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readTransaction.setReadOnly(true);
+        this.userShards = userShards;
+        this.gapTimeout = gapTimeout;
+        this.pollInterval = pollInterval;
+        this.heartbeat = heartbeat;
+        this.stallTimeout = stallTimeout;
+        this.streamBatchSize = streamBatchSize;
+        this.retention = retention;
+        this.trimInterval = trimInterval;
+        this.trimChunkSize = trimChunkSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::pollAll, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::trim, trimInterval.toMillis(), trimInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        delivery.shutdownNow();
+    }
+
+    @Override
+    @Transactional
+    public void record(UserChange.Type type, Collection<Long> userIds) {
+        if (!userIds.isEmpty()) {
+            userChangeRepository.recordChanges(userIds, type.name(), new Date());
+        }
+    }
+
+    // The shard is bound before the transaction takes its connection
+    @Override
+    public UserChangeBatch getChanges(int shard, long since, int limit) {
+        return userShards.call(shard, () -> readTransaction.execute(status -> readChanges(since, limit)));
+    }
+
+    @Override
+    public long getLatestSeq(int shard) {
+        Long maxSeq = userShards.call(shard, () -> readTransaction.execute(status -> userChangeRepository.findMaxSeq()));
+        return maxSeq == null ? 0 : maxSeq;
+    }
+
+    private UserChangeBatch readChanges(long since, int limit) {
+        Long minSeq = userChangeRepository.findMinSeq();
+        // The newest change is never trimmed, so a cursor below the oldest one has missed changes
+        if (since > 0 && minSeq != null && since < minSeq - 1) {
+            throw new ChangeLogTrimmedException("Changes after " + since + " have been trimmed, the oldest kept is "
+                    + minSeq + ". Reload the users and read again from since=0.");
+        }
+        List<UserChange> changes = userChangeRepository.findAfter(since, PageRequest.of(0, limit));
+        return UserChangeBatch.of(settled(changes, since, minSeq), since);
+    }
+
+    @Override
+    public Runnable subscribe(int shard, long since, UserChangeSubscriber subscriber) {
+        Subscription subscription = new Subscription(shard, since, subscriber);
+        subscriptions.add(subscription);
+        // Catch up right away instead of waiting for the next poll
+        scheduler.execute(() -> catchUp(subscription));
+        return () -> subscriptions.remove(subscription);
+    }
+
+    // Sequence numbers are taken at insert but become visible at commit, so a missing number may
+    // still show up. Changes after a gap are held back until it is older than gapTimeout, after
+    // which it is taken for a rolled back transaction. Numbers at or below the trimmed horizon are
+    // not gaps.
+    private List<UserChange> settled(List<UserChange> changes, long since, Long minSeq) {
+        long settledBefore = System.currentTimeMillis() - gapTimeout.toMillis();
+        long previous = minSeq == null ? since : Math.max(since, minSeq - 1);
+        for (int i = 0; i < changes.size(); i++) {
+            UserChange change = changes.get(i);
+            if (change.getSeq() != previous + 1 && change.getChangedAt().getTime() > settledBefore) {
+                return changes.subList(0, i);
+            }
+            previous = change.getSeq();
+        }
+        return changes;
+    }
+
+    private void pollAll() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Integer, Long> latest = new HashMap<>();
+            for (Subscription subscription : subscriptions) {
+                if (subscription.delivering) {
+                    cancelIfStalled(subscription);
+                    continue;
+                }
+                int shard = subscription.shard;
+                if (!latest.containsKey(shard)) {
+                    latest.put(shard, userShards.call(shard, userChangeRepository::findMaxSeq));
+                }
+                poll(subscription, latest.get(shard));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Polling the change log failed", e);
+        }
+    }
+
+    private void catchUp(Subscription subscription) {
+        try {
+            poll(subscription, userShards.call(subscription.shard, userChangeRepository::findMaxSeq));
+        } catch (RuntimeException e) {
+            cancel(subscription, e);
+        }
+    }
+
+    // Reads the next batch here and hands it to a delivery thread. A subscriber still busy with its
+    // previous batch gets nothing new, so nothing queues up behind a slow one.
+    private void poll(Subscription subscription, Long latest) {
+        if (!subscriptions.contains(subscription) || subscription.delivering) {
+            return;
+        }
+        try {
+            List<UserChange> changes = latest != null && subscription.cursor < latest
+                    ? getChanges(subscription.shard, subscription.cursor, streamBatchSize).getChanges()
+                    : List.of();
+            long now = System.nanoTime();
+            if (changes.isEmpty() && now - subscription.lastDelivery < heartbeat.toNanos()) {
+                return;
+            }
+            subscription.deliveringSince = now;
+            subscription.delivering = true;
+            delivery.execute(() -> deliver(subscription, changes));
+        } catch (RuntimeException e) {
+            cancel(subscription, e);
+        }
+    }
+
+    private void deliver(Subscription subscription, List<UserChange> changes) {
+        try {
+            if (!subscription.subscriber.deliver(changes)) {
+                subscriptions.remove(subscription);
+                return;
+            }
+        } catch (RuntimeException e) {
+            subscriptions.remove(subscription);
+            subscription.subscriber.failed(e);
+            return;
+        }
+        if (!changes.isEmpty()) {
+            subscription.cursor = changes.get(changes.size() - 1).getSeq();
+        }
+        subscription.lastDelivery = System.nanoTime();
+        subscription.delivering = false;
+        if (changes.size() == streamBatchSize) {
+            // More is waiting, fetch it without waiting for the next poll
+            scheduler.execute(() -> catchUp(subscription));
+        }
+    }
+
+    // A subscriber that has not taken a batch within stallTimeout, e.g. a client that stopped reading,
+    // is dropped. It can resume from its last sequence number.
+    private void cancelIfStalled(Subscription subscription) {
+        if (System.nanoTime() - subscription.deliveringSince > stallTimeout.toNanos()) {
+            log.warn("Dropping a change feed subscriber of shard {} that has not taken a batch for {}",
+                    subscription.shard, stallTimeout);
+            cancel(subscription, new IllegalStateException("The subscriber fell behind the change feed"));
+        }
+    }
+
+    // failed() may have to wait for a send that is still in progress, so it never runs on the scheduler
+    private void cancel(Subscription subscription, RuntimeException e) {
+        if (subscriptions.remove(subscription)) {
+            delivery.execute(() -> subscription.subscriber.failed(e));
+        }
+    }
+
+    private void trim() {
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            userShards.run(shard, this::trimShard);
+        }
+    }
+
+    // Deletes changes older than the retention in chunks, always keeping the newest one
+    private void trimShard() {
+        try {
+            Long minSeq = userChangeRepository.findMinSeq();
+            Long maxSeq = userChangeRepository.findMaxSeq();
+            Long expired = userChangeRepository.findMaxSeqChangedBefore(
+                    new Date(System.currentTimeMillis() - retention.toMillis()));
+            if (minSeq == null || maxSeq == null || expired == null) {
+                return;
+            }
+            long upTo = Math.min(expired, maxSeq - 1);
+            long trimmed = 0;
+            for (long after = minSeq - 1; after < upTo; after += trimChunkSize) {
+                long from = after;
+                long to = Math.min(upTo, after + trimChunkSize);
+                trimmed += transactionTemplate.execute(status -> userChangeRepository.deleteBetween(from, to));
+            }
+            if (trimmed > 0) {
+                log.info("Trimmed {} changes of shard {} up to seq {}", trimmed, ShardContext.current(), upTo);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Trimming the change log of shard {} failed", ShardContext.current(), e);
+        }
+    }
+
+    // The scheduler reads the cursor only while no delivery is running, the delivery thread advances it
+    private static final class Subscription {
+
+        private final int shard;
+
+        private final UserChangeSubscriber subscriber;
+
+        private volatile long cursor;
+
+        private volatile long lastDelivery = System.nanoTime();
+
+        private volatile boolean delivering;
+
+        private volatile long deliveringSince;
+
+        Subscription(int shard, long cursor, UserChangeSubscriber subscriber) {
+            this.shard = shard;
+            this.cursor = cursor;
+            this.subscriber = subscriber;
+        }
+    }
+}
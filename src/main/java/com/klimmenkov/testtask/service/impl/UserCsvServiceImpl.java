@@ -0,0 +1,136 @@
+package com.klimmenkov.testtask.service.impl;
+
+import com.klimmenkov.testtask.csv.UserCsvReader;
+import com.klimmenkov.testtask.csv.UserCsvWriter;
+import com.klimmenkov.testtask.dto.BatchCreateResult;
+import com.klimmenkov.testtask.dto.BatchItemResult;
+import com.klimmenkov.testtask.dto.CsvImportResult;
+import com.klimmenkov.testtask.dto.CsvRejectedRow;
+import com.klimmenkov.testtask.exception.InvalidCsvException;
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.service.UserCsvService;
+import com.klimmenkov.testtask.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Service
+public class UserCsvServiceImpl implements UserCsvService {
+
+    private final UserService userService;
+
+    private final int chunkSize;
+
+    private final int maxReportedRejections;
+
+    @Autowired
+    public UserCsvServiceImpl(UserService userService,
+                              @Value("${user.batch.chunkSize:500}") int chunkSize,
+                              @Value("${user.csv.maxReportedRejections:1000}") int maxReportedRejections) {
+        this.userService = userService;
+        this.chunkSize = chunkSize;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    @Override
+    public void exportUsers(Date fromDate, Date toDate, Writer writer) {
+        UserCsvWriter csvWriter = new UserCsvWriter(writer);
+        Consumer<User> consumer = user -> {
+            try {
+                csvWriter.write(user);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            csvWriter.writeHeader();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (fromDate == null) {
+            userService.streamUsers(consumer);
+        } else {
+            userService.streamUsersByBirthDateRange(fromDate, toDate, consumer);
+        }
+    }
+
+    @Override
+    public CsvImportResult importUsers(Reader reader) {
+        CsvImportResult result = new CsvImportResult();
+        List<User> chunk = new ArrayList<>(chunkSize);
+        List<Integer> rowNumbers = new ArrayList<>(chunkSize);
+        // Rows that failed to parse after the chunk's first row, reported with the chunk to keep row order
+        List<CsvRejectedRow> unparsed = new ArrayList<>();
+        try {
+            UserCsvReader csvReader = new UserCsvReader(reader);
+            UserCsvReader.Row row;
+            while ((row = csvReader.next()) != null) {
+                result.setRows(row.number());
+                if (row.user() == null) {
+                    CsvRejectedRow rejected = CsvRejectedRow.of(row.number(), Collections.singletonList(row.error()));
+                    if (chunk.isEmpty()) {
+                        reject(result, rejected);
+                    } else {
+                        unparsed.add(rejected);
+                    }
+                    continue;
+                }
+                chunk.add(row.user());
+                rowNumbers.add(row.number());
+                if (chunk.size() == chunkSize) {
+                    createChunk(chunk, rowNumbers, unparsed, result);
+                }
+            }
+        } catch (InvalidCsvException e) {
+            // A broken header rejects the whole file, anything later only stops the import there
+            if (result.getRows() == 0 && chunk.isEmpty()) {
+                throw e;
+            }
+            result.setError(e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!chunk.isEmpty()) {
+            createChunk(chunk, rowNumbers, unparsed, result);
+        }
+        return result;
+    }
+
+    // Each chunk goes through createUsers, which validates and inserts it in batched transactions
+    private void createChunk(List<User> chunk, List<Integer> rowNumbers, List<CsvRejectedRow> unparsed,
+                             CsvImportResult result) {
+        BatchCreateResult created = userService.createUsers(chunk);
+        result.setCreated(result.getCreated() + created.getCreated());
+        List<CsvRejectedRow> rejections = new ArrayList<>(unparsed);
+        for (BatchItemResult item : created.getItems()) {
+            if (!item.isCreated()) {
+                rejections.add(CsvRejectedRow.of(rowNumbers.get(item.getIndex()), item.getErrors()));
+            }
+        }
+        rejections.sort(Comparator.comparingLong(CsvRejectedRow::getRow));
+        for (CsvRejectedRow rejected : rejections) {
+            reject(result, rejected);
+        }
+        chunk.clear();
+        rowNumbers.clear();
+        unparsed.clear();
+    }
+
+    private void reject(CsvImportResult result, CsvRejectedRow rejected) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getRejections().size() < maxReportedRejections) {
+            result.getRejections().add(rejected);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.klimmenkov.testtask.service.impl;
+
+import com.klimmenkov.testtask.config.CacheConfig;
+import com.klimmenkov.testtask.dto.DeleteJobStatus;
+import com.klimmenkov.testtask.index.UserIndexSynchronizer;
+import com.klimmenkov.testtask.model.UserChange;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.service.UserChangeService;
+import com.klimmenkov.testtask.service.UserDeleteJobService;
+import com.klimmenkov.testtask.shard.UserShards;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+public class UserDeleteJobServiceImpl implements UserDeleteJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDeleteJobServiceImpl.class);
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CacheManager cacheManager;
+
+    private final UserIndexSynchronizer userIndexSynchronizer;
+
+    private final UserChangeService userChangeService;
+
+    private final UserShards userShards;
+
+    private final int chunkSize;
+
+    private final Duration pause;
+
+    private final int retainedJobs;
+
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-delete-jobs");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public UserDeleteJobServiceImpl(UserRepository userRepository, TransactionTemplate transactionTemplate,
+                                    CacheManager cacheManager, UserIndexSynchronizer userIndexSynchronizer,
+                                    UserChangeService userChangeService, UserShards userShards,
+                                    @Value("${user.delete.chunkSize:1000}") int chunkSize,
+                                    @Value("${user.delete.pause:100ms}") Duration pause,
+                                    @Value("${user.delete.retainedJobs:100}") int retainedJobs) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.userIndexSynchronizer = userIndexSynchronizer;
+        this.userChangeService = userChangeService;
+        this.userShards = userShards;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.retainedJobs = retainedJobs;
+    }
+
+    @Override
+    public DeleteJobStatus deleteUsersByIds(List<Long> userIds) {
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        // An id that maps to no shard counts toward the total but is never deleted, like an id that does not exist
+        Map<Integer, List<Long>> idsByShard = ids.stream()
+                .filter(id -> userShards.shardOf(id) >= 0)
+                .collect(Collectors.groupingBy(userShards::shardOf, TreeMap::new, Collectors.toList()));
+        return submit(ids.size(), job -> {
+            boolean first = true;
+            for (Map.Entry<Integer, List<Long>> shardIds : idsByShard.entrySet()) {
+                List<Long> onShard = shardIds.getValue();
+                for (int from = 0; from < onShard.size(); from += chunkSize) {
+                    if (!first) {
+                        pause();
+                    }
+                    first = false;
+                    List<Long> chunk = onShard.subList(from, Math.min(from + chunkSize, onShard.size()));
+                    deleteChunk(job, shardIds.getKey(), () -> chunk);
+                }
+            }
+        });
+    }
+
+    @Override
+    public DeleteJobStatus deleteUsersByBirthDateRange(Date fromDate, Date toDate) {
+        long total = 0;
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            total += userShards.call(shard, () -> userRepository.countByBirthDateBetween(fromDate, toDate));
+        }
+        return submit(total, job -> {
+            PageRequest firstChunk = PageRequest.of(0, chunkSize);
+            for (int shard = 0; shard < userShards.count(); shard++) {
+                while (deleteChunk(job, shard,
+                        () -> userRepository.findIdsByBirthDateBetween(fromDate, toDate, firstChunk)) == chunkSize) {
+                    pause();
+                }
+            }
+        });
+    }
+
+    @Override
+    public Optional<DeleteJobStatus> getJob(String jobId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(jobId)).map(Job::status);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private DeleteJobStatus submit(long total, JobBody body) {
+        Job job = new Job(UUID.randomUUID().toString(), total);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            Iterator<Job> oldest = jobs.values().iterator();
+            while (jobs.size() > retainedJobs && oldest.hasNext()) {
+                if (oldest.next().isFinished()) {
+                    oldest.remove();
+                }
+            }
+        }
+        executor.execute(() -> run(job, body));
+        return job.status();
+    }
+
+    private void run(Job job, JobBody body) {
+        job.start();
+        try {
+            body.run(job);
+            job.finish(DeleteJobStatus.State.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish(DeleteJobStatus.State.FAILED, "Interrupted");
+        } catch (RuntimeException e) {
+            log.warn("Delete job {} failed after {} users", job.id, job.deleted, e);
+            job.finish(DeleteJobStatus.State.FAILED, e.getMessage());
+        }
+    }
+
+    // Selecting the ids inside the deleting transaction keeps range jobs on the primary
+    private int deleteChunk(Job job, int shard, Supplier<List<Long>> chunk) {
+        int[] selectedAndDeleted = userShards.call(shard, () -> transactionTemplate.execute(status -> {
+            List<Long> ids = chunk.get();
+            if (ids.isEmpty()) {
+                return new int[]{0, 0};
+            }
+            userChangeService.record(UserChange.Type.DELETED, ids);
+            int count = userRepository.deleteAllByIds(ids);
+            Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+            if (cache != null) {
+                ids.forEach(cache::evict);
+            }
+            userIndexSynchronizer.removed(new ArrayList<>(ids));
+            return new int[]{ids.size(), count};
+        }));
+        if (selectedAndDeleted[0] > 0) {
+            job.chunkDone(selectedAndDeleted[1]);
+        }
+        return selectedAndDeleted[0];
+    }
+
+    private void pause() throws InterruptedException {
+        if (!pause.isZero()) {
+            Thread.sleep(pause.toMillis());
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobBody {
+        void run(Job job) throws InterruptedException;
+    }
+
+    // Only the executor thread writes progress; readers take a snapshot through volatile fields.
+    private static final class Job {
+
+        private final String id;
+
+        private final long total;
+
+        private final Date createdAt = new Date();
+
+        private volatile DeleteJobStatus.State state = DeleteJobStatus.State.QUEUED;
+
+        private volatile long deleted;
+
+        private volatile int chunks;
+
+        private volatile String error;
+
+        private volatile Date startedAt;
+
+        private volatile Date finishedAt;
+
+        Job(String id, long total) {
+            this.id = id;
+            this.total = total;
+        }
+
+        void start() {
+            startedAt = new Date();
+            state = DeleteJobStatus.State.RUNNING;
+        }
+
+        void chunkDone(int deletedInChunk) {
+            deleted += deletedInChunk;
+            chunks++;
+        }
+
+        void finish(DeleteJobStatus.State finalState, String message) {
+            error = message;
+            finishedAt = new Date();
+            state = finalState;
+        }
+
+        boolean isFinished() {
+            return state == DeleteJobStatus.State.COMPLETED || state == DeleteJobStatus.State.FAILED;
+        }
+
+        DeleteJobStatus status() {
+            DeleteJobStatus status = new DeleteJobStatus();
+            status.setId(id);
+            status.setState(state);
+            status.setTotal(total);
+            status.setDeleted(deleted);
+            status.setChunks(chunks);
+            status.setError(error);
+            status.setCreatedAt(createdAt);
+            status.setStartedAt(startedAt);
+            status.setFinishedAt(finishedAt);
+            return status;
+        }
+    }
+}
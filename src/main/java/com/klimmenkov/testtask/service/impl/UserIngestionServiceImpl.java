@@ -0,0 +1,217 @@
+package com.klimmenkov.testtask.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.klimmenkov.testtask.dto.BatchCreateResult;
+import com.klimmenkov.testtask.dto.BatchItemResult;
+import com.klimmenkov.testtask.dto.IngestionStatistics;
+import com.klimmenkov.testtask.dto.IngestionStatus;
+import com.klimmenkov.testtask.exception.IngestionQueueFullException;
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.service.UserIngestionService;
+import com.klimmenkov.testtask.service.UserService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class UserIngestionServiceImpl implements UserIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIngestionServiceImpl.class);
+
+    private final UserService userService;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final Duration shutdownTimeout;
+
+    private final BlockingQueue<Pending> queue;
+
+    private final Cache<String, IngestionStatus> tickets;
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder created = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final DrainRate drainRate = new DrainRate();
+
+    private final Thread writer = new Thread(this::drain, "user-ingestion-writer");
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public UserIngestionServiceImpl(UserService userService,
+                                    @Value("${user.ingestion.capacity:10000}") int capacity,
+                                    @Value("${user.ingestion.batchSize:500}") int batchSize,
+                                    @Value("${user.ingestion.maxTickets:100000}") long maxTickets,
+                                    @Value("${user.ingestion.ticketTtl:10m}") Duration ticketTtl,
+                                    @Value("${user.ingestion.shutdownTimeout:30s}") Duration shutdownTimeout) {
+        this.userService = userService;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.tickets = Caffeine.newBuilder()
+                .maximumSize(maxTickets)
+                .expireAfterWrite(ticketTtl)
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(shutdownTimeout.toMillis());
+        if (!queue.isEmpty()) {
+            log.warn("Shutting down with {} queued users not written", queue.size());
+        }
+    }
+
+    @Override
+    public IngestionStatus enqueue(User user) {
+        if (!running) {
+            rejected.increment();
+            throw new IngestionQueueFullException("User ingestion is shutting down, retry later");
+        }
+
+        String ticket = UUID.randomUUID().toString();
+        IngestionStatus pending = IngestionStatus.pending(ticket);
+        tickets.put(ticket, pending);
+        if (!queue.offer(new Pending(ticket, user))) {
+            tickets.invalidate(ticket);
+            rejected.increment();
+            throw new IngestionQueueFullException("User ingestion queue is full, retry later");
+        }
+        enqueued.increment();
+        return pending;
+    }
+
+    @Override
+    public Optional<IngestionStatus> getStatus(String ticket) {
+        return Optional.ofNullable(tickets.getIfPresent(ticket));
+    }
+
+    @Override
+    public IngestionStatistics getStatistics() {
+        IngestionStatistics statistics = new IngestionStatistics();
+        statistics.setCapacity(capacity);
+        statistics.setQueueDepth(queue.size());
+        statistics.setEnqueued(enqueued.sum());
+        statistics.setRejected(rejected.sum());
+        statistics.setCreated(created.sum());
+        statistics.setFailed(failed.sum());
+        statistics.setBatches(batches.sum());
+        statistics.setDrainRatePerSecond(drainRate.perSecond());
+        return statistics;
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<User> users = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            users.add(pending.user());
+        }
+
+        try {
+            BatchCreateResult result = userService.createUsers(users);
+            for (BatchItemResult item : result.getItems()) {
+                String ticket = batch.get(item.getIndex()).ticket();
+                tickets.put(ticket, item.isCreated()
+                        ? IngestionStatus.created(ticket, item.getId())
+                        : IngestionStatus.failed(ticket, item.getErrors()));
+            }
+            created.add(result.getCreated());
+            failed.add(result.getFailed());
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} queued users", batch.size(), e);
+            List<String> errors = Collections.singletonList(e.getMessage());
+            for (Pending pending : batch) {
+                tickets.put(pending.ticket(), IngestionStatus.failed(pending.ticket(), errors));
+            }
+            failed.add(batch.size());
+        }
+        batches.increment();
+        drainRate.record(batch.size());
+    }
+
+    private record Pending(String ticket, User user) {
+    }
+
+    // Users written per second over the last minute, one slot per second.
+    private static final class DrainRate {
+
+        private static final int WINDOW_SECONDS = 60;
+
+        private final long[] seconds = new long[WINDOW_SECONDS];
+
+        private final long[] counts = new long[WINDOW_SECONDS];
+
+        synchronized void record(int users) {
+            long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            int slot = (int) (now % WINDOW_SECONDS);
+            if (seconds[slot] != now) {
+                seconds[slot] = now;
+                counts[slot] = 0;
+            }
+            counts[slot] += users;
+        }
+
+        synchronized double perSecond() {
+            long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            long total = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (now - seconds[i] < WINDOW_SECONDS) {
+                    total += counts[i];
+                }
+            }
+            return (double) total / WINDOW_SECONDS;
+        }
+    }
+}
@@ -1,36 +1,261 @@
 package com.klimmenkov.testtask.service.impl;
 
+import com.klimmenkov.testtask.config.CacheConfig;
+import com.klimmenkov.testtask.dto.BatchCreateResult;
+import com.klimmenkov.testtask.dto.BatchItemResult;
+import com.klimmenkov.testtask.exception.DuplicateEmailException;
+import com.klimmenkov.testtask.exception.IndexNotReadyException;
+import com.klimmenkov.testtask.exception.PreconditionFailedException;
 import com.klimmenkov.testtask.exception.UserNotFoundException;
+import com.klimmenkov.testtask.exception.UserValidationException;
+import com.klimmenkov.testtask.index.BirthDateIndex;
+import com.klimmenkov.testtask.index.EmailBloomFilter;
+import com.klimmenkov.testtask.index.UserIndexSynchronizer;
+import com.klimmenkov.testtask.index.UserPrefixIndex;
 import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserChange;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.model.UserField;
+import com.klimmenkov.testtask.repository.UserConstraints;
 import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.service.UserChangeService;
 import com.klimmenkov.testtask.service.UserService;
+import com.klimmenkov.testtask.validator.UserValidator;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class UserServiceImpl implements UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserServiceImpl.class);
+
+    // Batch errors name no SQL, table or constraint, the database's own message stays in the log
+    static final String CONSTRAINT_VIOLATED = "User violates a database constraint";
+
+    static final String NOT_SAVED = "User could not be saved";
+
     private final UserRepository userRepository;
 
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserValidator userValidator;
+
+    private final int batchChunkSize;
+
+    private final UserIndexSynchronizer userIndexSynchronizer;
+
+    private final ObjectProvider<BirthDateIndex> birthDateIndex;
+
+    private final ObjectProvider<EmailBloomFilter> emailBloomFilter;
+
+    private final ObjectProvider<UserPrefixIndex> prefixIndex;
+
+    private final UserChangeService userChangeService;
+
     @Autowired
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, EntityManager entityManager,
+                           TransactionTemplate transactionTemplate, UserValidator userValidator,
+                           @Value("${user.batch.chunkSize:500}") int batchChunkSize,
+                           UserIndexSynchronizer userIndexSynchronizer,
+                           ObjectProvider<BirthDateIndex> birthDateIndex,
+                           ObjectProvider<EmailBloomFilter> emailBloomFilter,
+                           ObjectProvider<UserPrefixIndex> prefixIndex,
+                           UserChangeService userChangeService) {
         this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.userValidator = userValidator;
+        this.batchChunkSize = batchChunkSize;
+        this.userIndexSynchronizer = userIndexSynchronizer;
+        this.birthDateIndex = birthDateIndex;
+        this.emailBloomFilter = emailBloomFilter;
+        this.prefixIndex = prefixIndex;
+        this.userChangeService = userChangeService;
     }
 
     @Override
+    @Transactional
     public User createUser(User user) {
-        return userRepository.save(user);
+        if (isEmailRegistered(user.getEmail())) {
+            throw duplicateEmail(user.getEmail());
+        }
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateEmailOr(e, user.getEmail());
+        }
+        userChangeService.record(UserChange.Type.CREATED, List.of(saved.getId()));
+        return saved;
+    }
+
+    @Override
+    public BatchCreateResult createUsers(List<User> users) {
+        List<BatchItemResult> items = new ArrayList<>(users.size());
+        List<User> chunk = new ArrayList<>(batchChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchChunkSize);
+        Set<String> batchEmails = new HashSet<>();
+
+        for (int i = 0; i < users.size(); i++) {
+            List<String> errors = validate(users.get(i));
+            if (errors.isEmpty() && (!batchEmails.add(normalizeEmail(users.get(i).getEmail()))
+                    || isEmailRegistered(users.get(i).getEmail()))) {
+                errors = Collections.singletonList("Email is already registered: " + users.get(i).getEmail());
+            }
+            if (!errors.isEmpty()) {
+                items.add(BatchItemResult.failed(i, errors));
+                continue;
+            }
+
+            chunk.add(users.get(i));
+            chunkIndexes.add(i);
+            if (chunk.size() == batchChunkSize) {
+                saveChunk(chunk, chunkIndexes, items);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, chunkIndexes, items);
+        }
+
+        items.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return BatchCreateResult.of(items);
+    }
+
+    private List<String> validate(User user) {
+        if (user == null) {
+            return Collections.singletonList("Malformed user");
+        }
+        return userValidator.errorMessages(user);
+    }
+
+    // The Bloom filter answers most new emails without a query, the unique index still has the last word
+    private boolean isEmailRegistered(String email) {
+        EmailBloomFilter filter = emailBloomFilter.getIfAvailable();
+        if (email == null || filter != null && !filter.mightContain(email)) {
+            return false;
+        }
+        return userRepository.existsByEmail(email);
+    }
+
+    private void checkEmailAvailable(String email, Long userId) {
+        if (email != null && userRepository.existsByEmailAndIdNot(email, userId)) {
+            throw duplicateEmail(email);
+        }
+    }
+
+    private static DuplicateEmailException duplicateEmail(String email) {
+        return new DuplicateEmailException("Email is already registered: " + email);
+    }
+
+    // The unique index catches a concurrent registration the pre-check missed
+    private static RuntimeException duplicateEmailOr(DataIntegrityViolationException e, String email) {
+        return UserConstraints.isDuplicateEmail(e) ? duplicateEmail(email) : e;
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
+    private void saveChunk(List<User> chunk, List<Integer> chunkIndexes, List<BatchItemResult> items) {
+        try {
+            List<User> saved = transactionTemplate.execute(status -> {
+                List<User> result = userRepository.saveAllAndFlush(chunk);
+                userChangeService.record(UserChange.Type.CREATED, result.stream().map(User::getId).toList());
+                entityManager.clear();
+                return result;
+            });
+            for (int i = 0; i < saved.size(); i++) {
+                items.add(BatchItemResult.created(chunkIndexes.get(i), saved.get(i).getId()));
+            }
+        } catch (DataAccessException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                items.add(saveSingle(chunk.get(i), chunkIndexes.get(i)));
+            }
+        }
+    }
+
+    private BatchItemResult saveSingle(User user, int index) {
+        user.setId(null);
+        user.setVersion(null);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                userRepository.saveAndFlush(user);
+                userChangeService.record(UserChange.Type.CREATED, List.of(user.getId()));
+            });
+            return BatchItemResult.created(index, user.getId());
+        } catch (DataIntegrityViolationException e) {
+            if (UserConstraints.isDuplicateEmail(e)) {
+                return BatchItemResult.failed(index, Collections.singletonList(duplicateEmail(user.getEmail()).getMessage()));
+            }
+            log.warn("Saving user {} of a batch violated a constraint", index, e);
+            return BatchItemResult.failed(index, Collections.singletonList(CONSTRAINT_VIOLATED));
+        } catch (DataAccessException e) {
+            log.warn("Saving user {} of a batch failed", index, e);
+            return BatchItemResult.failed(index, Collections.singletonList(NOT_SAVED));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
+    public User getUser(Long userId) {
+        return userRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException("User not found with ID: " + userId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public User getUserByEmail(String email) {
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new UserNotFoundException("User not found with email: " + email));
     }
 
     @Override
-    public User updateUser(Long userId, User updatedUser) {
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
+    public User updateUser(Long userId, User updatedUser, Long expectedVersion) {
+        if (expectedVersion != null) {
+            return updateUserIfVersionMatches(userId, updatedUser, expectedVersion);
+        }
+
         User userToUpdate = userRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException("User not found with ID: " + userId));
+        if (!Objects.equals(normalizeEmail(userToUpdate.getEmail()), normalizeEmail(updatedUser.getEmail()))) {
+            checkEmailAvailable(updatedUser.getEmail(), userId);
+        }
 
         userToUpdate.setEmail(updatedUser.getEmail());
         userToUpdate.setFirstName(updatedUser.getFirstName());
@@ -39,37 +264,191 @@ public class UserServiceImpl implements UserService {
         userToUpdate.setAddress(updatedUser.getAddress());
         userToUpdate.setPhoneNumber(updatedUser.getPhoneNumber());
 
-        return userRepository.save(userToUpdate);
+        recordIfChanged(userToUpdate);
+        return userToUpdate;
+    }
+
+    private User updateUserIfVersionMatches(Long userId, User updatedUser, Long expectedVersion) {
+        checkEmailAvailable(updatedUser.getEmail(), userId);
+        int updated;
+        try {
+            updated = userRepository.updateIfVersionMatches(userId, expectedVersion,
+                    updatedUser.getEmail(), updatedUser.getFirstName(), updatedUser.getLastName(),
+                    updatedUser.getBirthDate(), updatedUser.getAddress(), updatedUser.getPhoneNumber());
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateEmailOr(e, updatedUser.getEmail());
+        }
+        if (updated == 0) {
+            throw versionMismatch(userId);
+        }
+        userChangeService.record(UserChange.Type.UPDATED, List.of(userId));
+
+        User user = new User(updatedUser.getEmail(), updatedUser.getFirstName(), updatedUser.getLastName(),
+                updatedUser.getBirthDate(), updatedUser.getAddress(), updatedUser.getPhoneNumber());
+        user.setId(userId);
+        user.setVersion(expectedVersion + 1);
+        userIndexSynchronizer.saved(user);
+        return user;
     }
 
     @Override
-    public User partiallyUpdateUser(Long userId, Map<String, Object> updates) {
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
+    public User partiallyUpdateUser(Long userId, Map<String, Object> updates, Long expectedVersion) {
         User existingUser = userRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException("User not found with ID: " + userId));
+        if (expectedVersion != null && !expectedVersion.equals(existingUser.getVersion())) {
+            throw versionMismatch(userId);
+        }
 
-        try {
-            for (Map.Entry<String, Object> entry : updates.entrySet()) {
-                String fieldName = entry.getKey();
-                Object fieldValue = entry.getValue();
+        // Checked before the entity becomes dirty, otherwise the query would flush the new email first
+        if (updates.get(UserField.EMAIL.getFieldName()) instanceof String email
+                && !Objects.equals(normalizeEmail(existingUser.getEmail()), normalizeEmail(email))) {
+            checkEmailAvailable(email, userId);
+        }
 
-                Field field = User.class.getDeclaredField(fieldName);
-                field.setAccessible(true);
-                field.set(existingUser, fieldValue);
-            }
-            return userRepository.save(existingUser);
+        UserField.apply(existingUser, updates);
+        List<String> errors = userValidator.errorMessages(existingUser);
+        if (!errors.isEmpty()) {
+            throw new UserValidationException(errors);
+        }
+        recordIfChanged(existingUser);
+        return existingUser;
+    }
+
+    // Flushing bumps the version only when a field really changed, so no-op updates are not logged
+    private void recordIfChanged(User user) {
+        Long version = user.getVersion();
+        try {
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateEmailOr(e, user.getEmail());
+        }
+        if (!Objects.equals(version, user.getVersion())) {
+            userChangeService.record(UserChange.Type.UPDATED, List.of(user.getId()));
+        }
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to update user with ID: " + userId, e);
+    private RuntimeException versionMismatch(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            return new UserNotFoundException("User not found with ID: " + userId);
         }
+        return new PreconditionFailedException("User with ID " + userId + " has been modified");
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
     public void deleteUser(Long userId) {
+        // Recorded first, the change keeps the version the user had
+        userChangeService.record(UserChange.Type.DELETED, List.of(userId));
         userRepository.deleteById(userId);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> searchUsersByBirthDateRange(Date fromDate, Date toDate) {
         return userRepository.findByBirthDateBetween(fromDate, toDate);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> searchUsersByBirthDateRange(Date fromDate, Date toDate, UserCursor after, int limit) {
+        UserCursor cursor = UserCursor.within(fromDate, after);
+        BirthDateIndex index = readyBirthDateIndex();
+        if (index != null) {
+            return index.page(fromDate, toDate, cursor, limit, this::findAllInOrder);
+        }
+        return userRepository.findPageAfter(cursor.getBirthDate(), cursor.getId(), toDate, PageRequest.of(0, limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> searchUserFieldsByBirthDateRange(Date fromDate, Date toDate, List<String> fields) {
+        return userRepository.findFieldsByBirthDateBetween(fields, fromDate, toDate);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> searchUserFieldsByBirthDateRange(Date fromDate, Date toDate, UserCursor after,
+                                                                      int limit, List<String> fields) {
+        UserCursor cursor = UserCursor.within(fromDate, after);
+        BirthDateIndex index = readyBirthDateIndex();
+        if (index != null) {
+            return index.page(fromDate, toDate, cursor, limit,
+                    ids -> userRepository.findFieldsByIdsInOrder(fields, ids));
+        }
+        return userRepository.findFieldsPageAfter(fields, cursor.getBirthDate(), cursor.getId(), toDate, limit);
+    }
+
+    // Without the index (user.index.prefix.enabled=false) this is a full scan matching the whole query
+    // against the start of one column, see UserRepository.findByPrefix. While the index loads, the
+    // scan is not run as a stand-in: it would be slow and answer differently.
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> searchUsersByPrefix(String query, int limit) {
+        UserPrefixIndex index = prefixIndex.getIfAvailable();
+        if (index != null) {
+            if (!index.isReady()) {
+                throw new IndexNotReadyException("The prefix index is still loading, retry shortly");
+            }
+            return findAllInOrder(index.search(query, limit));
+        }
+        String prefix = query.trim().toLowerCase(Locale.ROOT)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return userRepository.findByPrefix(prefix + "%", PageRequest.of(0, limit));
+    }
+
+    @Override
+    public OptionalLong countUsersByBirthDateRange(Date fromDate, Date toDate) {
+        BirthDateIndex index = readyBirthDateIndex();
+        return index == null ? OptionalLong.empty() : OptionalLong.of(index.count(fromDate, toDate));
+    }
+
+    private BirthDateIndex readyBirthDateIndex() {
+        BirthDateIndex index = birthDateIndex.getIfAvailable();
+        return index != null && index.isReady() ? index : null;
+    }
+
+    private List<User> findAllInOrder(long[] userIds) {
+        List<Long> ids = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            ids.add(userId);
+        }
+        Map<Long, User> usersById = userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<User> users = new ArrayList<>(userIds.length);
+        for (Long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsersByBirthDateRange(Date fromDate, Date toDate, Consumer<User> consumer) {
+        try (Stream<User> users = userRepository.streamByBirthDateBetween(fromDate, toDate)) {
+            users.forEach(user -> {
+                consumer.accept(user);
+                entityManager.detach(user);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsers(Consumer<User> consumer) {
+        try (Stream<User> users = userRepository.streamAll()) {
+            users.forEach(user -> {
+                consumer.accept(user);
+                entityManager.detach(user);
+            });
+        }
+    }
 }
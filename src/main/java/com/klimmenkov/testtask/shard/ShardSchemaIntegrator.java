@@ -0,0 +1,46 @@
+package com.klimmenkov.testtask.shard;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.tool.schema.spi.DelayedDropAction;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hibernate manages the schema (spring.jpa.hibernate.ddl-auto) of the database it bootstraps with,
+// which is shard 0. This applies the same action to the other shards.
+public class ShardSchemaIntegrator implements Integrator {
+
+    private final UserShards userShards;
+
+    private final Map<Integer, DelayedDropAction> delayedDrops = new ConcurrentHashMap<>();
+
+    public ShardSchemaIntegrator(UserShards userShards) {
+        this.userShards = userShards;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                          SessionFactoryImplementor sessionFactory) {
+        ServiceRegistry serviceRegistry = sessionFactory.getServiceRegistry();
+        Map<String, Object> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        for (int shard = 1; shard < userShards.count(); shard++) {
+            int current = shard;
+            userShards.run(shard, () -> SchemaManagementToolCoordinator.process(metadata, serviceRegistry, settings,
+                    action -> delayedDrops.put(current, action)));
+        }
+    }
+
+    // create-drop drops the schema of the other shards too
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        delayedDrops.forEach((shard, action) -> userShards.run(shard, () -> action.perform(serviceRegistry)));
+        delayedDrops.clear();
+    }
+}
@@ -0,0 +1,53 @@
+package com.klimmenkov.testtask.shard;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Every shard has its own users_seq, reached through the connection of the bound shard. The pooled
+// optimizer caches a block of values, so each shard needs its own optimizer as well. Shard 0 keeps
+// the inherited one and its ids are not encoded.
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+
+    private final Map<Integer, Optimizer> shardOptimizers = new ConcurrentHashMap<>();
+
+    private Class<?> returnedClass;
+
+    private String optimizationStrategy;
+
+    private long initialValue;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, parameters, serviceRegistry);
+        returnedClass = type.getReturnedClass();
+        optimizationStrategy = determineOptimizationStrategy(parameters, getOptimizer().getIncrementSize());
+        initialValue = determineInitialValue(parameters);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        int shard = ShardContext.current();
+        if (shard == 0) {
+            return super.generate(session, object);
+        }
+        Optimizer optimizer = shardOptimizers.computeIfAbsent(shard, key -> OptimizerFactory.buildOptimizer(
+                optimizationStrategy, returnedClass, getOptimizer().getIncrementSize(), initialValue));
+        Number localId = (Number) optimizer.generate(getDatabaseStructure().buildCallback(session));
+        return UserShards.encode(shard, localId.longValue());
+    }
+
+    // insert ... select would take raw values from the sequence
+    @Override
+    public boolean supportsBulkInsertionIdentifierGeneration() {
+        return false;
+    }
+}
@@ -0,0 +1,357 @@
+package com.klimmenkov.testtask.shard;
+
+import com.klimmenkov.testtask.dto.BatchCreateResult;
+import com.klimmenkov.testtask.dto.BatchItemResult;
+import com.klimmenkov.testtask.exception.DuplicateEmailException;
+import com.klimmenkov.testtask.exception.UserNotFoundException;
+import com.klimmenkov.testtask.index.BirthDateIndex;
+import com.klimmenkov.testtask.index.EmailBloomFilter;
+import com.klimmenkov.testtask.index.UserPrefixIndex;
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.model.UserField;
+import com.klimmenkov.testtask.model.UserProjection;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.service.UserService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Routes every call to the shards of UserServiceImpl. Single users go to the shard in their id (new
+// users to the shard of their email), searches ask all shards in parallel and merge.
+@Service
+@Primary
+@ConditionalOnProperty(name = "user.shards.urls")
+public class ShardedUserService implements UserService {
+
+    private static final Comparator<User> BIRTH_DATE_ORDER =
+            Comparator.comparing(User::getBirthDate).thenComparing(User::getId);
+
+    private static final Comparator<Map<String, Object>> ROW_BIRTH_DATE_ORDER =
+            Comparator.comparing((Map<String, Object> row) -> (Date) row.get(UserProjection.BIRTH_DATE))
+                    .thenComparing(row -> (Long) row.get(UserProjection.ID));
+
+    private final UserService shardService;
+
+    private final UserRepository userRepository;
+
+    private final UserShards userShards;
+
+    private final ObjectProvider<EmailBloomFilter> emailBloomFilter;
+
+    private final ObjectProvider<UserPrefixIndex> prefixIndex;
+
+    private final ObjectProvider<BirthDateIndex> birthDateIndex;
+
+    @Autowired
+    public ShardedUserService(@Qualifier("userServiceImpl") UserService shardService, UserRepository userRepository,
+                              UserShards userShards, ObjectProvider<EmailBloomFilter> emailBloomFilter,
+                              ObjectProvider<UserPrefixIndex> prefixIndex,
+                              ObjectProvider<BirthDateIndex> birthDateIndex) {
+        this.shardService = shardService;
+        this.userRepository = userRepository;
+        this.userShards = userShards;
+        this.emailBloomFilter = emailBloomFilter;
+        this.prefixIndex = prefixIndex;
+        this.birthDateIndex = birthDateIndex;
+    }
+
+    @Override
+    public User createUser(User user) {
+        int shard = userShards.shardFor(user.getEmail());
+        if (isEmailOnOtherShard(user.getEmail(), shard, null)) {
+            throw duplicateEmail(user.getEmail());
+        }
+        return userShards.call(shard, () -> shardService.createUser(user));
+    }
+
+    @Override
+    public BatchCreateResult createUsers(List<User> users) {
+        List<BatchItemResult> items = new ArrayList<>(users.size());
+        Map<Integer, List<Integer>> indexesByShard = new TreeMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            // Malformed users are reported by the shard service like in a single database
+            int shard = user == null ? 0 : userShards.shardFor(user.getEmail());
+            if (user != null && isEmailOnOtherShard(user.getEmail(), shard, null)) {
+                items.add(BatchItemResult.failed(i, List.of("Email is already registered: " + user.getEmail())));
+                continue;
+            }
+            indexesByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+        }
+
+        List<Integer> shards = new ArrayList<>(indexesByShard.keySet());
+        List<BatchCreateResult> results = userShards.fanOut(shards, shard -> shardService.createUsers(
+                indexesByShard.get(shard).stream().map(users::get).toList()));
+        for (int i = 0; i < shards.size(); i++) {
+            List<Integer> indexes = indexesByShard.get(shards.get(i));
+            for (BatchItemResult item : results.get(i).getItems()) {
+                item.setIndex(indexes.get(item.getIndex()));
+                items.add(item);
+            }
+        }
+        items.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return BatchCreateResult.of(items);
+    }
+
+    @Override
+    public User getUser(Long userId) {
+        return userShards.call(shardOf(userId), () -> shardService.getUser(userId));
+    }
+
+    // Users keep their shard when the email changes, so the email's own shard is only the first guess
+    @Override
+    public User getUserByEmail(String email) {
+        int home = userShards.shardFor(email);
+        try {
+            return userShards.call(home, () -> shardService.getUserByEmail(email));
+        } catch (UserNotFoundException e) {
+            List<Integer> others = userShards.all().stream().filter(shard -> shard != home).toList();
+            if (others.isEmpty()) {
+                throw e;
+            }
+            return userShards.fanOut(others, shard -> userRepository.findByEmail(email)).stream()
+                    .flatMap(Optional::stream)
+                    .findFirst()
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    @Override
+    public User updateUser(Long userId, User updatedUser, Long expectedVersion) {
+        int shard = shardOf(userId);
+        checkEmailChange(userId, shard, updatedUser.getEmail());
+        return userShards.call(shard, () -> shardService.updateUser(userId, updatedUser, expectedVersion));
+    }
+
+    @Override
+    public User partiallyUpdateUser(Long userId, Map<String, Object> updates, Long expectedVersion) {
+        int shard = shardOf(userId);
+        if (updates.get(UserField.EMAIL.getFieldName()) instanceof String email) {
+            checkEmailChange(userId, shard, email);
+        }
+        return userShards.call(shard, () -> shardService.partiallyUpdateUser(userId, updates, expectedVersion));
+    }
+
+    @Override
+    public void deleteUser(Long userId) {
+        int shard = userShards.shardOf(userId);
+        // No shard can hold the user, deleting it is a no-op as it is for unknown ids
+        if (shard >= 0) {
+            userShards.run(shard, () -> shardService.deleteUser(userId));
+        }
+    }
+
+    @Override
+    public List<User> searchUsersByBirthDateRange(Date fromDate, Date toDate) {
+        List<User> users = new ArrayList<>();
+        userShards.fanOut(shard -> shardService.searchUsersByBirthDateRange(fromDate, toDate)).forEach(users::addAll);
+        users.sort(BIRTH_DATE_ORDER);
+        return users;
+    }
+
+    // The birth date index holds the ids of all shards: one slice of it is the page, and each shard
+    // only loads its own ids of the slice. Without the index every shard returns its first limit users
+    // after the cursor, the page is the first limit of all.
+    @Override
+    public List<User> searchUsersByBirthDateRange(Date fromDate, Date toDate, UserCursor after, int limit) {
+        BirthDateIndex index = birthDateIndex.getIfAvailable();
+        if (index != null && index.isReady()) {
+            return index.page(fromDate, toDate, UserCursor.within(fromDate, after), limit,
+                    ids -> findOnShardsInOrder(ids, userRepository::findAllById, User::getId));
+        }
+        return merge(userShards.fanOut(shard ->
+                shardService.searchUsersByBirthDateRange(fromDate, toDate, after, limit)), BIRTH_DATE_ORDER, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> searchUserFieldsByBirthDateRange(Date fromDate, Date toDate,
+                                                                      List<String> fields) {
+        List<String> withKeyset = UserProjection.withKeyset(fields);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        userShards.fanOut(shard -> shardService.searchUserFieldsByBirthDateRange(fromDate, toDate, withKeyset))
+                .forEach(rows::addAll);
+        rows.sort(ROW_BIRTH_DATE_ORDER);
+        UserProjection.retainSelected(rows, fields);
+        return rows;
+    }
+
+    @Override
+    public List<Map<String, Object>> searchUserFieldsByBirthDateRange(Date fromDate, Date toDate, UserCursor after,
+                                                                      int limit, List<String> fields) {
+        BirthDateIndex index = birthDateIndex.getIfAvailable();
+        if (index != null && index.isReady()) {
+            return index.page(fromDate, toDate, UserCursor.within(fromDate, after), limit,
+                    ids -> findOnShardsInOrder(ids,
+                            onShard -> userRepository.findFieldsByIdsInOrder(fields, toArray(onShard)),
+                            row -> (Long) row.get(UserProjection.ID)));
+        }
+        return merge(userShards.fanOut(shard ->
+                        shardService.searchUserFieldsByBirthDateRange(fromDate, toDate, after, limit, fields)),
+                ROW_BIRTH_DATE_ORDER, limit);
+    }
+
+    // The prefix index covers all shards, its order decides; without it matches are ordered by id
+    @Override
+    public List<User> searchUsersByPrefix(String query, int limit) {
+        List<User> users = new ArrayList<>();
+        userShards.fanOut(shard -> shardService.searchUsersByPrefix(query, limit)).forEach(users::addAll);
+        UserPrefixIndex index = prefixIndex.getIfAvailable();
+        if (index != null && index.isReady()) {
+            long[] ids = index.search(query, limit);
+            Map<Long, Integer> positions = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                positions.put(ids[i], i);
+            }
+            users.sort(Comparator.comparing(user -> positions.getOrDefault(user.getId(), Integer.MAX_VALUE)));
+        } else {
+            users.sort(Comparator.comparing(User::getId));
+        }
+        return users.size() > limit ? users.subList(0, limit) : users;
+    }
+
+    @Override
+    public OptionalLong countUsersByBirthDateRange(Date fromDate, Date toDate) {
+        return shardService.countUsersByBirthDateRange(fromDate, toDate);
+    }
+
+    @Override
+    public void streamUsersByBirthDateRange(Date fromDate, Date toDate, Consumer<User> consumer) {
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            userShards.run(shard, () -> shardService.streamUsersByBirthDateRange(fromDate, toDate, consumer));
+        }
+    }
+
+    // Shard by shard is id order, the shard is in the top bits of the id
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            userShards.run(shard, () -> shardService.streamUsers(consumer));
+        }
+    }
+
+    private int shardOf(Long userId) {
+        int shard = userId == null ? -1 : userShards.shardOf(userId);
+        if (shard < 0) {
+            throw new UserNotFoundException("User not found with ID: " + userId);
+        }
+        return shard;
+    }
+
+    private void checkEmailChange(Long userId, int shard, String email) {
+        if (email == null || !userShards.isEnabled()) {
+            return;
+        }
+        String current = userShards.call(shard, () -> shardService.getUser(userId)).getEmail();
+        if (!Objects.equals(normalizeEmail(current), normalizeEmail(email))
+                && isEmailOnOtherShard(email, shard, userId)) {
+            throw duplicateEmail(email);
+        }
+    }
+
+    // The unique index only covers its own shard. The Bloom filter covers all of them and spares the
+    // fan-out for most new emails; two shards taking the same new email at the same time can still
+    // both succeed.
+    private boolean isEmailOnOtherShard(String email, int shard, Long userId) {
+        if (email == null || !userShards.isEnabled()) {
+            return false;
+        }
+        EmailBloomFilter filter = emailBloomFilter.getIfAvailable();
+        if (filter != null && !filter.mightContain(email)) {
+            return false;
+        }
+        List<Integer> others = userShards.all().stream().filter(other -> other != shard).toList();
+        return userShards.fanOut(others, other -> userId == null
+                        ? userRepository.existsByEmail(email)
+                        : userRepository.existsByEmailAndIdNot(email, userId))
+                .contains(Boolean.TRUE);
+    }
+
+    private static DuplicateEmailException duplicateEmail(String email) {
+        return new DuplicateEmailException("Email is already registered: " + email);
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
+    // Looks up each shard's part of ids in one parallel round and returns the rows in the order of ids,
+    // without the ones that were not found
+    private <T> List<T> findOnShardsInOrder(long[] ids, Function<List<Long>, List<T>> find, Function<T, Long> idOf) {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (long id : ids) {
+            int shard = userShards.shardOf(id);
+            if (shard >= 0) {
+                idsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(id);
+            }
+        }
+        Map<Long, T> rowsById = new HashMap<>(ids.length * 2);
+        userShards.fanOut(new ArrayList<>(idsByShard.keySet()), shard -> find.apply(idsByShard.get(shard)))
+                .forEach(rows -> rows.forEach(row -> rowsById.put(idOf.apply(row), row)));
+
+        List<T> inOrder = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T row = rowsById.get(id);
+            if (row != null) {
+                inOrder.add(row);
+            }
+        }
+        return inOrder;
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // k-way merge of lists that are each sorted by order
+    private static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int limit) {
+        PriorityQueue<ListCursor<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.head(), b.head()));
+        for (List<T> list : sorted) {
+            if (!list.isEmpty()) {
+                heads.add(new ListCursor<>(list));
+            }
+        }
+        List<T> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            ListCursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (++cursor.position < cursor.list.size()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static final class ListCursor<T> {
+
+        private final List<T> list;
+
+        private int position;
+
+        ListCursor(List<T> list) {
+            this.list = list;
+        }
+
+        T head() {
+            return list.get(position);
+        }
+    }
+}
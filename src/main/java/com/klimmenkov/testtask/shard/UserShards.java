@@ -0,0 +1,155 @@
+package com.klimmenkov.testtask.shard;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+// Users live on user.shards.urls, placed by a hash of their email. The shard is kept in the top bits
+// of the id, so a user is found again from the id alone:
+//   id = shard << 48 | id from the shard's own sequence
+// Ids stay below 2^53 and survive JSON numbers, and the ids of shard 0 are the ids of an unsharded
+// database, which can therefore become shard 0 as it is.
+@Component
+public class UserShards {
+
+    public static final int MAX_SHARDS = 32;
+
+    private static final int SHARD_SHIFT = 48;
+
+    private static final long LOCAL_ID_MASK = (1L << SHARD_SHIFT) - 1;
+
+    private final int count;
+
+    // Fan-out queries, only started with more than one shard
+    private final ExecutorService executor;
+
+    @Autowired
+    public UserShards(@Value("${user.shards.urls:}") List<String> urls) {
+        this((int) Math.max(1, urls.stream().filter(url -> !url.isBlank()).count()));
+    }
+
+    public UserShards(int count) {
+        if (count < 1 || count > MAX_SHARDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS + " shards are supported, got " + count);
+        }
+        this.count = count;
+        this.executor = count == 1 ? null : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "user-shards");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isEnabled() {
+        return count > 1;
+    }
+
+    public List<Integer> all() {
+        return IntStream.range(0, count).boxed().toList();
+    }
+
+    public static long encode(int shard, long localId) {
+        if (localId < 0 || localId > LOCAL_ID_MASK) {
+            throw new IllegalStateException("Id " + localId + " of shard " + shard + " is out of range");
+        }
+        return (long) shard << SHARD_SHIFT | localId;
+    }
+
+    // -1 for ids no configured shard can have issued
+    public int shardOf(long id) {
+        long shard = id >>> SHARD_SHIFT;
+        return id < 0 || shard >= count ? -1 : (int) shard;
+    }
+
+    public int shardFor(String email) {
+        if (email == null || count == 1) {
+            return 0;
+        }
+        int hash = email.toLowerCase(Locale.ROOT).hashCode();
+        // String.hashCode is weak in the low bits for similar strings, mix before taking the modulo
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, count);
+    }
+
+    public <T> T call(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.bind(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.bind(previous);
+        }
+    }
+
+    public void run(int shard, Runnable work) {
+        call(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> List<T> fanOut(IntFunction<T> work) {
+        return fanOut(all(), work);
+    }
+
+    // Runs work on each of the shards in parallel, each with its own shard bound, and returns the
+    // results in the order of the shards. The first failure is rethrown once all are done.
+    public <T> List<T> fanOut(List<Integer> shards, IntFunction<T> work) {
+        List<T> results = new ArrayList<>(shards.size());
+        if (executor == null || shards.size() == 1) {
+            for (int shard : shards) {
+                results.add(call(shard, () -> work.apply(shard)));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int shard : shards) {
+            futures.add(executor.submit(() -> call(shard, () -> work.apply(shard))));
+        }
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtime
+                            ? runtime
+                            : new IllegalStateException("Shard query failed", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for the shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+}
@@ -2,7 +2,6 @@ package com.klimmenkov.testtask.validator;
 
 import jakarta.validation.Constraint;
 import jakarta.validation.Payload;
-import org.springframework.beans.factory.annotation.Value;
 
 import java.lang.annotation.*;
 
@@ -14,7 +13,6 @@ public @interface AgeConstraint {
 
     String message() default "User's age is not allowed.";
 
-    @Value("${user.minAge}")
     int min() default 18;
 
     Class<?>[] groups() default {};
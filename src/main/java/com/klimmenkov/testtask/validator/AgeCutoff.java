@@ -0,0 +1,45 @@
+package com.klimmenkov.testtask.validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+@Component
+public class AgeCutoff {
+
+    private final int minAge;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private volatile Window window;
+
+    @Autowired
+    public AgeCutoff(@Value("${user.minAge:18}") int minAge) {
+        this.minAge = minAge;
+    }
+
+    public boolean isOldEnough(Date birthDate) {
+        long now = System.currentTimeMillis();
+        Window current = window;
+        if (current == null || now >= current.validUntil()) {
+            current = computeWindow(now);
+            window = current;
+        }
+        return birthDate.getTime() < current.cutoff();
+    }
+
+    private Window computeWindow(long now) {
+        LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        long cutoff = today.minusYears(minAge).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        long validUntil = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Window(cutoff, validUntil);
+    }
+
+    private record Window(long cutoff, long validUntil) {
+    }
+}
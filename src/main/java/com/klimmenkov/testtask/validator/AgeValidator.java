@@ -2,31 +2,31 @@ package com.klimmenkov.testtask.validator;
 
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
+import org.springframework.beans.factory.annotation.Autowired;
 
-import java.time.LocalDate;
-import java.time.Period;
-import java.time.ZoneId;
 import java.util.Date;
 
 public class AgeValidator implements ConstraintValidator<AgeConstraint, Date> {
 
-    private int minAge;
+    private AgeCutoff ageCutoff;
+
+    public AgeValidator() {
+    }
+
+    @Autowired
+    public AgeValidator(AgeCutoff ageCutoff) {
+        this.ageCutoff = ageCutoff;
+    }
 
     @Override
     public void initialize(AgeConstraint constraintAnnotation) {
-        this.minAge = constraintAnnotation.min();
+        if (ageCutoff == null) {
+            ageCutoff = new AgeCutoff(constraintAnnotation.min());
+        }
     }
 
     @Override
     public boolean isValid(Date birthDate, ConstraintValidatorContext context) {
-        if (birthDate == null) {
-            return false;
-        }
-
-        LocalDate localBirthDate = birthDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-        LocalDate currentDate = LocalDate.now();
-        int age = Period.between(localBirthDate, currentDate).getYears();
-
-        return age >= minAge;
+        return birthDate != null && ageCutoff.isOldEnough(birthDate);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,277 @@
+package com.klimmenkov.testtask.validator;
+
+import com.klimmenkov.testtask.model.User;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Past;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+@Component
+public class UserValidator implements Validator {
+
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+
+    private static final int MAX_DOMAIN_LABEL_LENGTH = 63;
+
+    private static final int MAX_DOMAIN_PART_LENGTH = 255;
+
+    private static final int EMAIL_BLANK = 1;
+
+    private static final int EMAIL_INVALID = 1 << 1;
+
+    private static final int FIRST_NAME_BLANK = 1 << 2;
+
+    private static final int LAST_NAME_BLANK = 1 << 3;
+
+    private static final int BIRTH_DATE_NOT_PAST = 1 << 4;
+
+    private static final int AGE_NOT_ALLOWED = 1 << 5;
+
+    private static final boolean[] ATOM_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ATOM_CHARS[c] = true;
+            ATOM_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            ATOM_CHARS[c] = true;
+        }
+        for (char c : "!#$%&'*+/=?^_`{|}~-".toCharArray()) {
+            ATOM_CHARS[c] = true;
+        }
+    }
+
+    private final jakarta.validation.Validator validator;
+
+    private final AgeCutoff ageCutoff;
+
+    private final String emailBlankMessage;
+
+    private final String emailMessage;
+
+    private final String firstNameBlankMessage;
+
+    private final String lastNameBlankMessage;
+
+    private final String pastMessage;
+
+    private final String ageMessage;
+
+    @Autowired
+    public UserValidator(jakarta.validation.Validator validator, AgeCutoff ageCutoff) {
+        this.validator = validator;
+        this.ageCutoff = ageCutoff;
+
+        Set<ConstraintViolation<User>> violations =
+                validator.validate(new User(" ", " ", " ", new Date(Long.MAX_VALUE / 2), null, null));
+        this.emailBlankMessage = message(violations, "email", NotBlank.class);
+        this.emailMessage = message(violations, "email", Email.class);
+        this.firstNameBlankMessage = message(violations, "firstName", NotBlank.class);
+        this.lastNameBlankMessage = message(violations, "lastName", NotBlank.class);
+        this.pastMessage = message(violations, "birthDate", Past.class);
+        this.ageMessage = message(violations, "birthDate", AgeConstraint.class);
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return User.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        int failed = check((User) target);
+        if (failed == 0) {
+            return;
+        }
+        if ((failed & EMAIL_BLANK) != 0) {
+            errors.rejectValue("email", "NotBlank", emailBlankMessage);
+        }
+        if ((failed & EMAIL_INVALID) != 0) {
+            errors.rejectValue("email", "Email", emailMessage);
+        }
+        if ((failed & FIRST_NAME_BLANK) != 0) {
+            errors.rejectValue("firstName", "NotBlank", firstNameBlankMessage);
+        }
+        if ((failed & LAST_NAME_BLANK) != 0) {
+            errors.rejectValue("lastName", "NotBlank", lastNameBlankMessage);
+        }
+        if ((failed & BIRTH_DATE_NOT_PAST) != 0) {
+            errors.rejectValue("birthDate", "Past", pastMessage);
+        }
+        if ((failed & AGE_NOT_ALLOWED) != 0) {
+            errors.rejectValue("birthDate", "AgeConstraint", ageMessage);
+        }
+    }
+
+    public List<String> errorMessages(User user) {
+        int failed = check(user);
+        if (failed == 0) {
+            return Collections.emptyList();
+        }
+        List<String> messages = new ArrayList<>(Integer.bitCount(failed));
+        if ((failed & EMAIL_BLANK) != 0) {
+            messages.add(emailBlankMessage);
+        }
+        if ((failed & EMAIL_INVALID) != 0) {
+            messages.add(emailMessage);
+        }
+        if ((failed & FIRST_NAME_BLANK) != 0) {
+            messages.add(firstNameBlankMessage);
+        }
+        if ((failed & LAST_NAME_BLANK) != 0) {
+            messages.add(lastNameBlankMessage);
+        }
+        if ((failed & BIRTH_DATE_NOT_PAST) != 0) {
+            messages.add(pastMessage);
+        }
+        if ((failed & AGE_NOT_ALLOWED) != 0) {
+            messages.add(ageMessage);
+        }
+        return messages;
+    }
+
+    private int check(User user) {
+        int failed = 0;
+        String email = user.getEmail();
+        if (isBlank(email)) {
+            failed |= EMAIL_BLANK;
+        }
+        if (!isValidEmail(email)) {
+            failed |= EMAIL_INVALID;
+        }
+        if (isBlank(user.getFirstName())) {
+            failed |= FIRST_NAME_BLANK;
+        }
+        if (isBlank(user.getLastName())) {
+            failed |= LAST_NAME_BLANK;
+        }
+        Date birthDate = user.getBirthDate();
+        if (birthDate == null) {
+            failed |= AGE_NOT_ALLOWED;
+        } else {
+            if (birthDate.getTime() >= System.currentTimeMillis()) {
+                failed |= BIRTH_DATE_NOT_PAST;
+            }
+            if (!ageCutoff.isOldEnough(birthDate)) {
+                failed |= AGE_NOT_ALLOWED;
+            }
+        }
+        return failed;
+    }
+
+    private boolean isValidEmail(String email) {
+        if (email == null || email.isEmpty()) {
+            return true;
+        }
+        int at = email.lastIndexOf('@');
+        if (at < 0) {
+            return false;
+        }
+        switch (checkAsciiEmail(email, at)) {
+            case 1:
+                return true;
+            case 0:
+                return false;
+            default:
+                return validator.validateValue(User.class, "email", email).stream()
+                        .noneMatch(violation -> isConstraint(violation, Email.class));
+        }
+    }
+
+    // 1 = valid, 0 = invalid, -1 = needs the full validator (quoted local part, IP literal, non-ASCII)
+    private static int checkAsciiEmail(String email, int at) {
+        if (at > MAX_LOCAL_PART_LENGTH) {
+            return 0;
+        }
+        int atomLength = 0;
+        for (int i = 0; i < at; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                if (atomLength == 0) {
+                    return 0;
+                }
+                atomLength = 0;
+            } else if (c == '"' || c >= 128) {
+                return -1;
+            } else if (ATOM_CHARS[c]) {
+                atomLength++;
+            } else {
+                return 0;
+            }
+        }
+        if (atomLength == 0) {
+            return 0;
+        }
+
+        int length = email.length();
+        if (at + 1 < length && email.charAt(at + 1) == '[') {
+            return -1;
+        }
+        if (length - at - 1 > MAX_DOMAIN_PART_LENGTH) {
+            return 0;
+        }
+        int labelLength = 0;
+        char previous = '.';
+        for (int i = at + 1; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                if (labelLength == 0 || previous == '-') {
+                    return 0;
+                }
+                labelLength = 0;
+            } else if (c >= 128) {
+                return -1;
+            } else if (ATOM_CHARS[c]) {
+                if (c == '-' && labelLength == 0) {
+                    return 0;
+                }
+                if (++labelLength > MAX_DOMAIN_LABEL_LENGTH) {
+                    return 0;
+                }
+            } else {
+                return 0;
+            }
+            previous = c;
+        }
+        return labelLength > 0 && previous != '-' ? 1 : 0;
+    }
+
+    private static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String message(Set<ConstraintViolation<User>> violations, String field,
+                                  Class<? extends Annotation> constraint) {
+        return violations.stream()
+                .filter(violation -> field.equals(violation.getPropertyPath().toString()))
+                .filter(violation -> isConstraint(violation, constraint))
+                .map(ConstraintViolation::getMessage)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(
+                        "No " + constraint.getSimpleName() + " constraint on User." + field));
+    }
+
+    private static boolean isConstraint(ConstraintViolation<?> violation, Class<? extends Annotation> constraint) {
+        return violation.getConstraintDescriptor().getAnnotation().annotationType() == constraint;
+    }
+}
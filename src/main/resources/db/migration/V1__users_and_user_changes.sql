@@ -0,0 +1,34 @@
+-- Schema as Hibernate's ddl-auto=update creates it on MySQL. Databases created that way are
+-- baselined at this version by spring.flyway.baseline-on-migrate instead of running it.
+create table users (
+    id bigint not null,
+    address varchar(255),
+    birth_date datetime(6),
+    email varchar(255),
+    first_name varchar(255),
+    last_name varchar(255),
+    phone_number varchar(255),
+    version bigint default 0 not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_users_birth_date_id on users (birth_date, id);
+create unique index uk_users_email on users (email);
+
+-- Emulates the users_seq sequence, IDs are handed out in blocks of 50
+create table users_seq (
+    next_val bigint
+) engine=InnoDB;
+
+insert into users_seq values (1);
+
+create table user_changes (
+    seq bigint not null auto_increment,
+    change_type varchar(16) not null,
+    changed_at datetime(6) not null,
+    user_id bigint not null,
+    user_version bigint,
+    primary key (seq)
+) engine=InnoDB;
+
+create index idx_user_changes_changed_at on user_changes (changed_at);
@@ -0,0 +1,81 @@
+package com.klimmenkov.testtask.admission;
+
+import com.klimmenkov.testtask.exception.TooManyRequestsException;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionInterceptorTest {
+
+    private final AdmissionInterceptor interceptor = new AdmissionInterceptor(1000, 1000, 1000, 2, 2, 2, 1, 1);
+
+    @Test
+    public void testHandlersAreClassified() throws Exception {
+        assertEquals(EndpointClass.READ, AdmissionInterceptor.classify(request("GET"), handler("read")));
+        assertEquals(EndpointClass.WRITE, AdmissionInterceptor.classify(request("POST"), handler("read")));
+        assertEquals(EndpointClass.BULK, AdmissionInterceptor.classify(request("GET"), handler("search")));
+
+        MockHttpServletRequest paged = request("GET");
+        paged.setParameter("limit", "10");
+        assertEquals(EndpointClass.SEARCH, AdmissionInterceptor.classify(paged, handler("search")));
+    }
+
+    @Test
+    public void testConcurrencyCapRejectsUntilPermitIsReleased() throws Exception {
+        MockHttpServletRequest first = request("GET");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(first, response, handler("search")));
+        assertEquals(1, interceptor.getInFlight(EndpointClass.BULK));
+
+        try {
+            interceptor.preHandle(request("GET"), response, handler("search"));
+            fail("Second bulk request was admitted");
+        } catch (TooManyRequestsException e) {
+            assertEquals(1, e.getRetryAfterSeconds());
+        }
+        assertTrue(interceptor.preHandle(request("GET"), response, handler("read")));
+
+        interceptor.afterCompletion(first, response, handler("search"), null);
+        assertEquals(0, interceptor.getInFlight(EndpointClass.BULK));
+        assertTrue(interceptor.preHandle(request("GET"), response, handler("search")));
+        assertEquals(1, interceptor.getOverCapacity());
+    }
+
+    @Test
+    public void testAsyncDispatchKeepsItsPermit() throws Exception {
+        MockHttpServletRequest request = request("GET");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response, handler("search")));
+        assertTrue(interceptor.preHandle(request, response, handler("search")));
+        assertEquals(1, interceptor.getInFlight(EndpointClass.BULK));
+
+        interceptor.afterCompletion(request, response, handler("search"), null);
+        assertEquals(0, interceptor.getInFlight(EndpointClass.BULK));
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/users");
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Handlers(), Handlers.class.getMethod(name));
+    }
+
+    public static class Handlers {
+
+        public void read() {
+        }
+
+        @Admission(value = EndpointClass.SEARCH, pagedBy = "limit")
+        public void search() {
+        }
+    }
+}
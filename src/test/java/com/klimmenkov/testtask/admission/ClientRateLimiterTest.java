@@ -0,0 +1,73 @@
+package com.klimmenkov.testtask.admission;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClientRateLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(123_456_789L);
+
+    // 10 tokens per second, bursts of 5
+    private final ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 5, 1000, clock::get);
+
+    @Test
+    public void testBurstIsAllowedThenRequestsAreSpacedByRate() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("client", 1));
+        }
+        assertEquals(100 * MILLI, rateLimiter.tryAcquire("client", 1));
+
+        clock.addAndGet(100 * MILLI);
+        assertEquals(0, rateLimiter.tryAcquire("client", 1));
+        assertEquals(100 * MILLI, rateLimiter.tryAcquire("client", 1));
+    }
+
+    @Test
+    public void testCostTakesSeveralTokensAndRejectionsTakeNone() {
+        assertEquals(0, rateLimiter.tryAcquire("client", 3));
+        assertEquals(100 * MILLI, rateLimiter.tryAcquire("client", 3));
+        assertEquals(0, rateLimiter.tryAcquire("client", 2));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, rateLimiter.tryAcquire("client", 20));
+    }
+
+    @Test
+    public void testClientsHaveSeparateBuckets() {
+        assertEquals(0, rateLimiter.tryAcquire("first", 5));
+        assertTrue(rateLimiter.tryAcquire("first", 1) > 0);
+        assertEquals(0, rateLimiter.tryAcquire("second", 5));
+    }
+
+    @Test
+    public void testConcurrentClientsNeverExceedBurst() throws InterruptedException {
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (rateLimiter.tryAcquire("client", 1) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(5, granted.get());
+    }
+}
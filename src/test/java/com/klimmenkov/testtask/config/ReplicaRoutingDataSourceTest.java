@@ -0,0 +1,69 @@
+package com.klimmenkov.testtask.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = h2("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1");
+
+    private final DataSource replica = h2("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1");
+
+    private final DataSource brokenReplica = h2("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void testWritesGoToPrimary() throws SQLException {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), Duration.ofSeconds(30));
+
+        assertEquals("jdbc:h2:mem:primary", url(routing));
+    }
+
+    @Test
+    public void testReadOnlyTransactionsSkipUnavailableReplica() throws SQLException {
+        ReplicaRoutingDataSource routing =
+                new ReplicaRoutingDataSource(primary, List.of(brokenReplica, replica), Duration.ofSeconds(30));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("jdbc:h2:mem:replica", url(routing));
+        }
+    }
+
+    @Test
+    public void testReadOnlyTransactionsFallBackToPrimary() throws SQLException {
+        ReplicaRoutingDataSource routing =
+                new ReplicaRoutingDataSource(primary, List.of(brokenReplica), Duration.ofSeconds(30));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals("jdbc:h2:mem:primary", url(routing));
+        assertEquals("jdbc:h2:mem:primary", url(routing));
+    }
+
+    private static String url(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+
+    private static DataSource h2(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
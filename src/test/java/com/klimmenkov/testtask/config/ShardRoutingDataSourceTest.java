@@ -0,0 +1,67 @@
+package com.klimmenkov.testtask.config;
+
+import com.klimmenkov.testtask.shard.UserShards;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardRoutingDataSourceTest {
+
+    private final UserShards userShards = new UserShards(2);
+
+    private final ShardRoutingDataSource routing = new ShardRoutingDataSource(List.of(
+            h2("jdbc:h2:mem:routing0;DB_CLOSE_DELAY=-1"),
+            h2("jdbc:h2:mem:routing1;DB_CLOSE_DELAY=-1")));
+
+    @After
+    public void tearDown() {
+        userShards.shutdown();
+    }
+
+    @Test
+    public void testUnboundGoesToFirstShard() {
+        assertEquals("jdbc:h2:mem:routing0", url(routing));
+    }
+
+    @Test
+    public void testBoundShardIsUsed() {
+        assertEquals("jdbc:h2:mem:routing1", userShards.call(1, () -> url(routing)));
+        assertEquals(List.of("jdbc:h2:mem:routing0", "jdbc:h2:mem:routing1"),
+                userShards.fanOut(shard -> url(routing)));
+    }
+
+    @Test
+    public void testUnconfiguredShardFails() {
+        ShardRoutingDataSource single = new ShardRoutingDataSource(List.of(h2("jdbc:h2:mem:routing0;DB_CLOSE_DELAY=-1")));
+        try {
+            userShards.call(1, () -> url(single));
+            fail("Shard 1 is not configured");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+
+    private static String url(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DataSource h2(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
@@ -0,0 +1,71 @@
+package com.klimmenkov.testtask.config;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserChange;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.service.UserChangeService;
+import com.klimmenkov.testtask.service.UserService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+// An embedded database and a long ttl, so only the change feed can make the cache drop a user
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cacheInvalidation;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "user.cache.ttl=1h",
+        "user.changes.gapTimeout=0s",
+        "user.changes.pollInterval=50ms"
+})
+public class UserCacheInvalidatorTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserChangeService userChangeService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void testWriteOnAnotherNodeEvictsTheCachedUser() throws InterruptedException {
+        User user = userService.createUser(user("other.node@gmail.com", "Before"));
+        long userId = user.getId();
+        assertEquals("Before", userService.getUser(userId).getFirstName());
+
+        // What another node's PUT does to the database, without touching this node's cache
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.updateIfVersionMatches(userId, user.getVersion(), user.getEmail(), "After",
+                    user.getLastName(), user.getBirthDate(), user.getAddress(), user.getPhoneNumber());
+            userChangeService.record(UserChange.Type.UPDATED, List.of(userId));
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!"After".equals(userService.getUser(userId).getFirstName()) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        User cached = userService.getUser(userId);
+        assertEquals("After", cached.getFirstName());
+        assertEquals(user.getVersion() + 1, cached.getVersion().longValue());
+    }
+
+    private static User user(String email, String firstName) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1990, Calendar.MAY, 5);
+        return new User(email, firstName, "Cached", calendar.getTime(), "1 Cache St", "0501112233");
+    }
+}
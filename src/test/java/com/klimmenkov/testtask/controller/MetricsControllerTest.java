@@ -0,0 +1,67 @@
+package com.klimmenkov.testtask.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klimmenkov.testtask.model.User;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MetricsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testRequestsServiceCallsAndStatementsAreExposed() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("metrics@gmail.com", "Metrics", "User", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/plain;version=0.0.4;charset=utf-8"))
+                .andExpect(content().string(containsString("user_http_request_duration_seconds_count"
+                        + "{endpoint=\"GET /users/{userId}\",handler=\"getUser\"}")))
+                .andExpect(content().string(containsString("user_http_request_duration_quantile_seconds"
+                        + "{endpoint=\"POST /users\",handler=\"createUser\",quantile=\"0.99\"}")))
+                .andExpect(content().string(containsString(
+                        "user_http_request_sql_statements_count{endpoint=\"POST /users\",handler=\"createUser\"}")))
+                .andExpect(content().string(containsString(
+                        "user_service_call_duration_seconds_count{method=\"getUser(Long)\"}")))
+                .andExpect(content().string(containsString("user_sql_round_trips_total ")))
+                .andExpect(content().string(containsString("user_cache_hits_total{cache=\"users\"}")))
+                .andExpect(content().string(containsString("user_ingestion_queue_depth ")));
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+}
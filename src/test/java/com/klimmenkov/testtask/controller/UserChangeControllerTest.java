@@ -0,0 +1,107 @@
+package com.klimmenkov.testtask.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.klimmenkov.testtask.model.User;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+import static com.klimmenkov.testtask.controller.UserControllerTest.asJsonString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Nothing is held back behind sequence gaps, so changes are visible as soon as they commit
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "user.changes.gapTimeout=0s")
+@AutoConfigureMockMvc
+public class UserChangeControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testCreateUpdateDeleteAreLoggedInOrder() throws Exception {
+        long since = readAll(0, new ArrayList<>());
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1990, Calendar.MAY, 5);
+        User user = new User("changes@gmail.com", "Change", "Log", calendar.getTime(), "1 Feed St", "0501112233");
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        mockMvc.perform(patch("/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(Map.of("firstName", "Changed"))))
+                .andExpect(status().isOk());
+        // Same value again, nothing changes and nothing is logged
+        mockMvc.perform(patch("/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(Map.of("firstName", "Changed"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+
+        List<JsonNode> changes = new ArrayList<>();
+        long next = readAll(since, changes);
+        List<JsonNode> ofUser = changes.stream().filter(change -> change.get("userId").asLong() == userId).toList();
+
+        assertEquals(3, ofUser.size());
+        assertEquals("CREATED", ofUser.get(0).get("type").asText());
+        assertEquals(0, ofUser.get(0).get("version").asLong());
+        assertEquals("UPDATED", ofUser.get(1).get("type").asText());
+        assertEquals(1, ofUser.get(1).get("version").asLong());
+        assertEquals("DELETED", ofUser.get(2).get("type").asText());
+        assertEquals(1, ofUser.get(2).get("version").asLong());
+        assertTrue(ofUser.get(0).get("seq").asLong() > since);
+        assertTrue(ofUser.get(0).get("seq").asLong() < ofUser.get(1).get("seq").asLong());
+        assertTrue(ofUser.get(1).get("seq").asLong() < ofUser.get(2).get("seq").asLong());
+        assertEquals(changes.get(changes.size() - 1).get("seq").asLong(), next);
+    }
+
+    @Test
+    public void testInvalidParametersAreRejected() throws Exception {
+        mockMvc.perform(get("/users/changes").param("since", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/changes").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/changes").param("limit", "10001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Follows next until a batch comes back empty and returns the last position
+    private long readAll(long since, List<JsonNode> changes) throws Exception {
+        while (true) {
+            String json = mockMvc.perform(get("/users/changes")
+                            .param("since", String.valueOf(since))
+                            .param("limit", "100"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode batch = objectMapper.readTree(json);
+            if (batch.get("changes").isEmpty()) {
+                assertEquals(since, batch.get("next").asLong());
+                return since;
+            }
+            batch.get("changes").forEach(changes::add);
+            since = batch.get("next").asLong();
+        }
+    }
+}
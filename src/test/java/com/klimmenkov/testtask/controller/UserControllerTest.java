@@ -1,24 +1,29 @@
 package com.klimmenkov.testtask.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.klimmenkov.testtask.model.User;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -51,6 +56,294 @@ public class UserControllerTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    public void testGetUser() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("cached@gmail.com", "Cached", "User", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email", is("cached@gmail.com")));
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetUserAsSmile() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("smile@gmail.com", "Smile", "User", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        byte[] smile = mockMvc.perform(get("/users/{userId}", userId)
+                        .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        assertEquals("smile@gmail.com", smileMapper.readTree(smile).get("email").asText());
+
+        mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testConditionalRequests() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("etag@gmail.com", "Etag", "User", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        String eTag = mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/users/{userId}", userId)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        user.setFirstName("Updated");
+        mockMvc.perform(put("/users/{userId}", userId)
+                        .header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("Updated")));
+
+        mockMvc.perform(put("/users/{userId}", userId)
+                        .header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testEmailLookupAndDuplicateEmails() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("unique@gmail.com", "Unique", "User", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        mockMvc.perform(get("/users").param("email", "unique@gmail.com"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.id", is(userId.intValue())));
+
+        mockMvc.perform(get("/users").param("email", "missing@gmail.com"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(user))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(0)))
+                .andExpect(jsonPath("$.failed", is(1)));
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testSearchUsersByPrefix() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("typeahead@gmail.com", "Typeahead", "Prefixson", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        mockMvc.perform(get("/users/search/prefix").param("q", "typea PREFIX"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(userId.intValue())));
+
+        mockMvc.perform(get("/users/search/prefix").param("q", "typeahead@gm").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)));
+
+        mockMvc.perform(get("/users/search/prefix").param("q", " "))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/users/search/prefix").param("q", "typeahead"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(0)));
+    }
+
+    @Test
+    public void testCreateUsersBatch() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User validUser = new User("batch@gmail.com", "Batch", "User", birthDate, "123 Main St", "0506667788");
+        User invalidUser = new User("null", "Batch", "User", birthDate, "123 Main St", "0506667788");
+
+        String resultJson = mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(validUser, invalidUser))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.failed", is(1)))
+                .andExpect(jsonPath("$.items[0].id", notNullValue()))
+                .andExpect(jsonPath("$.items[1].created", is(false)))
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(resultJson).get("items").get(0).get("id").asLong();
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testCreateUserAsync() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User user = new User("async@gmail.com", "Async", "User", birthDate, "123 Main St", "0506667788");
+
+        String ticketJson = mockMvc.perform(post("/users")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andExpect(jsonPath("$.state", is("PENDING")))
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String ticket = objectMapper.readTree(ticketJson).get("ticket").asText();
+
+        String state = "PENDING";
+        String statusJson = null;
+        for (int attempt = 0; attempt < 50 && "PENDING".equals(state); attempt++) {
+            Thread.sleep(100);
+            statusJson = mockMvc.perform(get("/users/ingestions/{ticket}", ticket))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            state = objectMapper.readTree(statusJson).get("state").asText();
+        }
+
+        assertEquals("CREATED", state);
+        Long userId = objectMapper.readTree(statusJson).get("userId").asLong();
+        mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email", is("async@gmail.com")));
+        mockMvc.perform(get("/users/ingestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queueDepth", notNullValue()));
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testDeleteUsersByIdsInBackground() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User first = new User("purge1@gmail.com", "Purge", "One", birthDate, "123 Main St", "0506667788");
+        User second = new User("purge2@gmail.com", "Purge", "Two", birthDate, "123 Main St", "0506667788");
+
+        String resultJson = mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(first, second))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long firstId = objectMapper.readTree(resultJson).get("items").get(0).get("id").asLong();
+        Long secondId = objectMapper.readTree(resultJson).get("items").get(1).get("id").asLong();
+
+        String jobJson = mockMvc.perform(post("/users/delete-jobs/by-ids")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(firstId, secondId))))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andExpect(jsonPath("$.total", is(2)))
+                .andReturn().getResponse().getContentAsString();
+        String jobId = objectMapper.readTree(jobJson).get("id").asText();
+
+        String state = null;
+        for (int attempt = 0; attempt < 50 && !"COMPLETED".equals(state); attempt++) {
+            Thread.sleep(100);
+            String statusJson = mockMvc.perform(get("/users/delete-jobs/{jobId}", jobId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            state = objectMapper.readTree(statusJson).get("state").asText();
+        }
+
+        mockMvc.perform(get("/users/delete-jobs/{jobId}", jobId))
+                .andExpect(jsonPath("$.state", is("COMPLETED")))
+                .andExpect(jsonPath("$.deleted", is(2)));
+        mockMvc.perform(get("/users/{userId}", firstId))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void testDeleteUser() throws Exception {
         Calendar calendar = Calendar.getInstance();
@@ -107,6 +400,52 @@ public class UserControllerTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    public void testPartiallyUpdateUserWithUnknownField() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1995, Calendar.JANUARY, 1);
+        Date birthDate = calendar.getTime();
+        User originalUser = new User("jane_doe@gmail.com", "Jane", "Doe", birthDate, "123 Main St", "555-555-5555");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(originalUser)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("nickname", "Janey");
+
+        mockMvc.perform(patch("/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(updates)))
+                .andExpect(status().isBadRequest());
+
+        updates.clear();
+        updates.put("birthDate", "1996-02-03");
+
+        mockMvc.perform(patch("/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(updates)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.birthDate", notNullValue()));
+
+        updates.clear();
+        updates.put("email", "not-an-email");
+
+        mockMvc.perform(patch("/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(updates)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]").value("Enter valid email. Use correct pattern: example@example.com"));
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
     @Test
     public void testUpdateUser() throws Exception {
         Calendar calendar = Calendar.getInstance();
@@ -137,6 +476,67 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$", notNullValue()));
     }
 
+    @Test
+    public void testSearchUsersWithSelectedFields() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2001, Calendar.MARCH, 3);
+        Date birthDate = calendar.getTime();
+        User user = new User("fields@gmail.com", "Fields", "User", birthDate, "123 Main St", "0506667788");
+
+        String userJson = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Long userId = objectMapper.readTree(userJson).get("id").asLong();
+
+        mockMvc.perform(get("/users/search")
+                        .param("fromDate", "2001-03-01")
+                        .param("toDate", "2001-03-05")
+                        .param("fields", "email"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].email", notNullValue()))
+                .andExpect(jsonPath("$[0].firstName").doesNotExist())
+                .andExpect(jsonPath("$[0].id").doesNotExist());
+
+        mockMvc.perform(get("/users/search")
+                        .param("fromDate", "2001-03-01")
+                        .param("toDate", "2001-03-05")
+                        .param("limit", "1")
+                        .param("fields", "email"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LINK))
+                .andExpect(jsonPath("$[0].email", notNullValue()))
+                .andExpect(jsonPath("$[0].id").doesNotExist())
+                .andExpect(jsonPath("$[0].birthDate").doesNotExist())
+                .andExpect(jsonPath("$[0].address").doesNotExist());
+
+        mockMvc.perform(get("/users/search")
+                        .param("fromDate", "2001-03-01")
+                        .param("toDate", "2001-03-05")
+                        .param("fields", "email,password"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testStreamUsersByBirthDateRange() throws Exception {
+        MvcResult result = mockMvc.perform(get("/users/search")
+                        .param("fromDate", "2000-01-01")
+                        .param("toDate", "2005-01-01")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+    }
+
     @Test
     public void testInvalidSearchUsersByBirthDateRange() throws Exception {
         mockMvc.perform(get("/users/search")
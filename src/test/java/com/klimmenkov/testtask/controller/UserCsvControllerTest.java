@@ -0,0 +1,70 @@
+package com.klimmenkov.testtask.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserCsvControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testImportThenExportUsers() throws Exception {
+        String csv = "email,firstName,lastName,birthDate,address\r\n"
+                + "csv@gmail.com,Csv,\"User, Jr.\",1951-03-14,\"1 Main St\"\r\n"
+                + "null,Csv,User,1951-03-14,\r\n"
+                + "csv2@gmail.com,Csv,User,14.03.1951,\r\n";
+
+        mockMvc.perform(post("/users/csv")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows", is(3)))
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.rejected", is(2)))
+                .andExpect(jsonPath("$.rejections[0].row", is(2)))
+                .andExpect(jsonPath("$.rejections[1].row", is(3)));
+
+        MvcResult export = mockMvc.perform(get("/users/csv")
+                        .param("fromDate", "1951-03-13")
+                        .param("toDate", "1951-03-15"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String exported = mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = exported.split("\r\n");
+        assertEquals(2, lines.length);
+        assertEquals("id,email,firstName,lastName,birthDate,address,phoneNumber,version", lines[0]);
+        String userId = lines[1].substring(0, lines[1].indexOf(','));
+        assertEquals(userId + ",csv@gmail.com,Csv,\"User, Jr.\",1951-03-14,1 Main St,,0", lines[1]);
+
+        mockMvc.perform(delete("/users/{userId}", userId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testImportRejectsUnknownColumns() throws Exception {
+        mockMvc.perform(post("/users/csv")
+                        .contentType("text/csv")
+                        .content("email,firstName,lastName,birthDate,age\r\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail", is("Unknown CSV column: age")));
+    }
+}
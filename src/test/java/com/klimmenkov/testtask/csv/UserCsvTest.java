@@ -0,0 +1,87 @@
+package com.klimmenkov.testtask.csv;
+
+import com.klimmenkov.testtask.exception.InvalidCsvException;
+import com.klimmenkov.testtask.model.User;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UserCsvTest {
+
+    @Test
+    public void testWrittenUsersAreReadBack() throws IOException {
+        User user = new User("a@b.c", "Anna, \"Ann\"", "Line\r\nBreak", date(1990, 2, 28), null, "050");
+        user.setId(7L);
+        user.setVersion(3L);
+
+        StringWriter out = new StringWriter();
+        UserCsvWriter writer = new UserCsvWriter(out);
+        writer.writeHeader();
+        writer.write(user);
+
+        assertEquals("id,email,firstName,lastName,birthDate,address,phoneNumber,version\r\n"
+                + "7,a@b.c,\"Anna, \"\"Ann\"\"\",\"Line\r\nBreak\",1990-02-28,,050,3\r\n", out.toString());
+
+        UserCsvReader reader = new UserCsvReader(new StringReader(out.toString()));
+        UserCsvReader.Row row = reader.next();
+        assertEquals(1, row.number());
+        assertEquals(null, row.user().getId());
+        assertEquals(user.getFirstName(), row.user().getFirstName());
+        assertEquals(user.getLastName(), row.user().getLastName());
+        assertEquals(user.getBirthDate(), row.user().getBirthDate());
+        assertEquals(null, row.user().getAddress());
+        assertEquals(null, reader.next());
+    }
+
+    @Test
+    public void testColumnsMayComeInAnyOrderAndBadRowsAreReported() throws IOException {
+        String csv = "\uFEFFbirthDate,lastName,firstName,email\n"
+                + "2000-01-31,Doe,John,john@example.com\n"
+                + "\n"
+                + "31.01.2000,Doe,John,john@example.com\n"
+                + "2000-01-31,Doe\n";
+        UserCsvReader reader = new UserCsvReader(new StringReader(csv));
+
+        UserCsvReader.Row first = reader.next();
+        assertEquals("john@example.com", first.user().getEmail());
+        assertEquals(date(2000, 1, 31), first.user().getBirthDate());
+        assertEquals("birthDate must be yyyy-MM-dd: 31.01.2000", reader.next().error());
+        UserCsvReader.Row third = reader.next();
+        assertEquals(3, third.number());
+        assertEquals("Expected 4 fields, found 2", third.error());
+        assertEquals(null, reader.next());
+    }
+
+    @Test
+    public void testInvalidHeadersAndUnterminatedQuotesAreRejected() throws IOException {
+        for (String csv : new String[]{"", "email,firstName,lastName\n", "email,firstName,lastName,birthDate,age\n"}) {
+            try {
+                new UserCsvReader(new StringReader(csv));
+                fail("Header accepted: " + csv);
+            } catch (InvalidCsvException e) {
+                assertTrue(e.getMessage().contains("CSV"));
+            }
+        }
+
+        UserCsvReader reader = new UserCsvReader(new StringReader("email,firstName,lastName,birthDate\n\"a@b.c,"));
+        try {
+            reader.next();
+            fail("Unterminated quote accepted");
+        } catch (InvalidCsvException e) {
+            assertEquals("Row 1 has an unterminated quoted field", e.getMessage());
+        }
+    }
+
+    private static Date date(int year, int month, int day) {
+        return Date.from(LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+}
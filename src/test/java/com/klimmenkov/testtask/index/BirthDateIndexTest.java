@@ -0,0 +1,137 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.shard.UserShards;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BirthDateIndexTest {
+
+    private final BirthDateIndex index = new BirthDateIndex(null, null, null);
+
+    @Test
+    public void testPagesFollowBirthDateAndIdOrder() {
+        index.apply(changes(user(3L, "2000-01-02"), user(1L, "2000-01-01"), user(2L, "2000-01-02")));
+
+        long[] firstPage = index.page(date("2000-01-01"), date("2000-01-31"), UserCursor.first(date("2000-01-01")), 2);
+        long[] secondPage = index.page(date("2000-01-01"), date("2000-01-31"), new UserCursor(date("2000-01-02"), 2L), 2);
+
+        assertArrayEquals(new long[]{1L, 2L}, firstPage);
+        assertArrayEquals(new long[]{3L}, secondPage);
+        assertEquals(2, index.count(date("2000-01-02"), date("2000-01-02")));
+    }
+
+    @Test
+    public void testUpdatesMoveAndDeletesRemoveEntries() {
+        index.apply(changes(user(1L, "2000-01-01"), user(2L, "2000-01-02")));
+
+        UserIndexChanges changes = changes(user(1L, "2000-03-01"));
+        changes.getRemovedIds().add(2L);
+        index.apply(changes);
+
+        assertEquals(0, index.count(date("2000-01-01"), date("2000-01-31")));
+        assertEquals(1, index.count(date("2000-03-01"), date("2000-03-01")));
+    }
+
+    @Test
+    public void testBulkChangesMatchSingleChanges() {
+        UserIndexChanges bulk = new UserIndexChanges();
+        for (long id = 1; id <= 1000; id++) {
+            bulk.getSaved().add(user(id, LocalDate.of(2000, 1, 1).plusDays(id % 100).toString()));
+        }
+        index.apply(bulk);
+
+        UserIndexChanges removals = new UserIndexChanges();
+        for (long id = 1; id <= 1000; id += 2) {
+            removals.getRemovedIds().add(id);
+        }
+        index.apply(removals);
+
+        assertEquals(500, index.count(date("2000-01-01"), date("2000-12-31")));
+        assertEquals(10, index.count(date("2000-01-03"), date("2000-01-03")));
+    }
+
+    @Test
+    public void testChangesCommittedDuringLoadAreKept() {
+        BirthDateIndex[] loading = new BirthDateIndex[1];
+        List<Object[]> rows = List.of(
+                new Object[]{1L, date("2000-01-01")},
+                new Object[]{2L, date("2000-01-02")},
+                new Object[]{3L, date("2000-01-03")});
+        UserIndexChanges commit = changes(user(1L, "2000-02-01"), user(4L, "2000-01-04"));
+        commit.getRemovedIds().add(3L);
+        loading[0] = new BirthDateIndex(IndexLoads.scanning("streamIdsAndBirthDates", rows,
+                () -> IndexLoads.commitConcurrently(loading[0], commit)), IndexLoads.NO_TRANSACTIONS, new UserShards(1));
+
+        loading[0].load();
+
+        assertTrue(loading[0].isReady());
+        assertArrayEquals(new long[]{2L, 4L}, loading[0].page(date("2000-01-01"), date("2000-01-31"),
+                UserCursor.first(date("2000-01-01")), 10));
+        assertEquals(1, loading[0].count(date("2000-02-01"), date("2000-02-01")));
+    }
+
+    @Test
+    public void testSingleAndBulkChangesMatchBruteForce() {
+        Random random = new Random(42);
+        Map<Long, Integer> dayOffsets = new HashMap<>();
+        for (int round = 0; round < 40; round++) {
+            UserIndexChanges changes = new UserIndexChanges();
+            // Alternates between the single entry path and the bulk path
+            int size = round % 2 == 0 ? 1 + random.nextInt(20) : 64 + random.nextInt(500);
+            for (int i = 0; i < size; i++) {
+                long id = 1 + random.nextInt(3000);
+                if (changes.getRemovedIds().contains(id)) {
+                    continue;
+                }
+                if (random.nextInt(5) == 0) {
+                    dayOffsets.remove(id);
+                    changes.getRemovedIds().add(id);
+                } else {
+                    int offset = random.nextInt(60);
+                    dayOffsets.put(id, offset);
+                    changes.getSaved().add(user(id, LocalDate.of(2000, 1, 1).plusDays(offset).toString()));
+                }
+            }
+            index.apply(changes);
+
+            List<Long> expected = new ArrayList<>(dayOffsets.keySet());
+            expected.sort((a, b) -> dayOffsets.get(a).equals(dayOffsets.get(b))
+                    ? Long.compare(a, b) : Integer.compare(dayOffsets.get(a), dayOffsets.get(b)));
+            long[] actual = index.page(date("2000-01-01"), date("2000-12-31"), UserCursor.first(date("2000-01-01")),
+                    10_000);
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), actual);
+        }
+    }
+
+    private static UserIndexChanges changes(User... users) {
+        UserIndexChanges changes = new UserIndexChanges();
+        for (User user : users) {
+            changes.getSaved().add(user);
+        }
+        return changes;
+    }
+
+    private static User user(Long id, String birthDate) {
+        User user = new User("user" + id + "@example.com", "First", "Last", date(birthDate), "Address", "0500000000");
+        user.setId(id);
+        return user;
+    }
+
+    private static Date date(String date) {
+        return Date.from(LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,48 @@
+package com.klimmenkov.testtask.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    private static final int EMAILS = 100_000;
+
+    @Test
+    public void testAddedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(EMAILS, 0.01);
+        for (int i = 0; i < EMAILS; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < EMAILS; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(EMAILS, 0.01);
+        for (int i = 0; i < EMAILS; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < EMAILS; i++) {
+            if (filter.mightContain("other" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positive rate " + falsePositives / (double) EMAILS, falsePositives < EMAILS * 0.02);
+        assertTrue(filter.memoryFootprintBytes() < EMAILS * 2);
+    }
+
+    @Test
+    public void testEmailFilterAnswersMaybeUntilLoaded() {
+        EmailBloomFilter filter = new EmailBloomFilter(null, null, null, EMAILS, 0.01);
+
+        assertTrue(filter.mightContain("nobody@example.com"));
+        assertEquals(0, filter.getNegatives());
+    }
+}
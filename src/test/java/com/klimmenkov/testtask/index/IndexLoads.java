@@ -0,0 +1,60 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.repository.UserRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Lets an index load from fixed rows and commit changes from another thread in the middle of the scan
+final class IndexLoads {
+
+    static final PlatformTransactionManager NO_TRANSACTIONS = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    private IndexLoads() {
+    }
+
+    // The stream method answers with rows, and duringScan runs once the first row has been read
+    static UserRepository scanning(String streamMethod, List<Object[]> rows, Runnable duringScan) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals(streamMethod)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    boolean[] ran = new boolean[1];
+                    return rows.stream().peek(row -> {
+                        if (!ran[0]) {
+                            ran[0] = true;
+                            duringScan.run();
+                        }
+                    });
+                });
+    }
+
+    // Commits on another thread, as a request would, and fails if the commit is kept waiting
+    static void commitConcurrently(UserIndex index, UserIndexChanges changes) {
+        try {
+            CompletableFuture.runAsync(() -> index.apply(changes)).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError("The commit waited for the index load", e);
+        }
+    }
+}
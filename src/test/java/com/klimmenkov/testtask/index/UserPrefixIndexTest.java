@@ -0,0 +1,149 @@
+package com.klimmenkov.testtask.index;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.shard.UserShards;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserPrefixIndexTest {
+
+    private final UserPrefixIndex index = new UserPrefixIndex(null, null, null);
+
+    @Test
+    public void testPrefixesMatchNamesAndEmailIgnoringCaseAndAccents() {
+        index.apply(changes(user(1L, "Jos\u00e9", "Smith", "jose@example.com"),
+                user(2L, "Mary-Jane", "Jones", "mj@example.com"),
+                user(3L, "John", "Josephson", "jj@example.com")));
+
+        assertArrayEquals(new long[]{1L, 3L}, index.search("JOS", 10));
+        assertArrayEquals(new long[]{2L}, index.search("jane", 10));
+        assertArrayEquals(new long[]{2L}, index.search("mj@ex", 10));
+        assertArrayEquals(new long[]{3L}, index.search("john jos", 10));
+        assertArrayEquals(new long[]{1L}, index.search("smi jo", 10));
+        assertArrayEquals(new long[0], index.search("  ", 10));
+    }
+
+    @Test
+    public void testResultsFollowTokenThenIdOrderUpToLimit() {
+        index.apply(changes(user(5L, "Anna", "Bell", "b5@example.com"),
+                user(4L, "Ann", "Bell", "b4@example.com"),
+                user(6L, "Anna", "Bell", "b6@example.com")));
+
+        assertArrayEquals(new long[]{4L, 5L}, index.search("ann", 2));
+        assertArrayEquals(new long[]{4L, 5L, 6L}, index.search("bell", 10));
+    }
+
+    @Test
+    public void testUpdatesAndDeletesReplaceEntriesBeforeAndAfterMerge() {
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            users.add(user(id, "First" + id, "Last", "user" + id + "@example.com"));
+        }
+        index.apply(changes(users.toArray(new User[0])));
+
+        index.apply(changes(user(7L, "Renamed", "Last", "user7@example.com")));
+        UserIndexChanges removal = new UserIndexChanges();
+        removal.getRemovedIds().add(8L);
+        index.apply(removal);
+
+        assertArrayEquals(new long[]{7L}, index.search("renamed", 10));
+        assertFalse(Arrays.stream(index.search("first7", 100)).anyMatch(id -> id == 7L));
+        assertArrayEquals(new long[0], index.search("user8@", 10));
+        assertArrayEquals(new long[]{9L}, index.search("first9 last", 1));
+        assertEquals(10, index.search("last", 10).length);
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() {
+        Random random = new Random(42);
+        String[] names = {"ann", "anna", "anton", "bob", "bo", "zoe", "zoey", "ab", "abe"};
+        Map<Long, User> users = new HashMap<>();
+        for (int round = 0; round < 20; round++) {
+            UserIndexChanges changes = new UserIndexChanges();
+            for (int i = 0; i < 500; i++) {
+                long id = 1 + random.nextInt(2000);
+                // Deleted IDs are never saved again
+                if (changes.getRemovedIds().contains(id)) {
+                    continue;
+                }
+                if (random.nextInt(10) == 0) {
+                    users.remove(id);
+                    changes.getRemovedIds().add(id);
+                } else {
+                    User user = user(id, names[random.nextInt(names.length)], names[random.nextInt(names.length)],
+                            names[random.nextInt(names.length)] + id + "@example.com");
+                    users.put(id, user);
+                    changes.getSaved().add(user);
+                }
+            }
+            index.apply(changes);
+
+            for (String query : new String[]{"a", "an", "ann", "bo", "zoe", "ab", "an bo", "zoey1"}) {
+                long[] expected = users.values().stream()
+                        .filter(user -> matches(user, query))
+                        .mapToLong(User::getId)
+                        .sorted()
+                        .toArray();
+                long[] actual = index.search(query, 2000);
+                Arrays.sort(actual);
+                assertArrayEquals(query, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testChangesCommittedDuringLoadAreKept() {
+        UserPrefixIndex[] loading = new UserPrefixIndex[1];
+        List<Object[]> rows = List.of(
+                new Object[]{1L, "Anna", "Bell", "anna@example.com"},
+                new Object[]{2L, "Anton", "Bell", "anton@example.com"},
+                new Object[]{3L, "Andrew", "Bell", "andrew@example.com"});
+        UserIndexChanges commit = changes(user(1L, "Hanna", "Bell", "hanna@example.com"),
+                user(4L, "Ann", "Bell", "ann@example.com"));
+        commit.getRemovedIds().add(3L);
+        loading[0] = new UserPrefixIndex(IndexLoads.scanning("streamIdsNamesAndEmails", rows,
+                () -> IndexLoads.commitConcurrently(loading[0], commit)), IndexLoads.NO_TRANSACTIONS, new UserShards(1));
+
+        loading[0].load();
+
+        assertTrue(loading[0].isReady());
+        assertArrayEquals(new long[]{4L, 2L}, loading[0].search("an", 10));
+        assertArrayEquals(new long[]{1L}, loading[0].search("hanna", 10));
+    }
+
+    private static boolean matches(User user, String query) {
+        for (String term : query.split(" ")) {
+            if (!user.getFirstName().startsWith(term) && !user.getLastName().startsWith(term)
+                    && !user.getEmail().startsWith(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static UserIndexChanges changes(User... users) {
+        UserIndexChanges changes = new UserIndexChanges();
+        changes.getSaved().addAll(Arrays.asList(users));
+        return changes;
+    }
+
+    private static User user(Long id, String firstName, String lastName, String email) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(email);
+        return user;
+    }
+}
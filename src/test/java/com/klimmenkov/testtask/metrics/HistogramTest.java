@@ -0,0 +1,48 @@
+package com.klimmenkov.testtask.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    private static final long[] BOUNDS = {10, 20, 50, 100};
+
+    @Test
+    public void testValuesFallIntoUpperInclusiveBuckets() {
+        Histogram histogram = new Histogram(BOUNDS);
+        for (long value : new long[]{0, 10, 11, 20, 50, 99, 100, 101, 1000}) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertArrayEquals(new long[]{2, 2, 1, 2, 2}, snapshot.counts());
+        assertEquals(9, snapshot.count());
+        assertEquals(1391, snapshot.sum());
+    }
+
+    @Test
+    public void testQuantilesInterpolateWithinBuckets() {
+        Histogram histogram = new Histogram(BOUNDS);
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i < 50 ? 5 : i < 90 ? 30 : 80);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(10.0, snapshot.quantile(0.5), 0.001);
+        assertEquals(50 + 50 * 5 / 10.0, snapshot.quantile(0.95), 0.001);
+        assertEquals(50 + 50 * 9 / 10.0, snapshot.quantile(0.99), 0.001);
+    }
+
+    @Test
+    public void testQuantilesAreCappedAtHighestBound() {
+        Histogram histogram = new Histogram(BOUNDS);
+        histogram.record(5000);
+
+        assertEquals(100.0, histogram.snapshot().quantile(0.99), 0.001);
+        assertEquals(0.0, new Histogram(BOUNDS).snapshot().quantile(0.5), 0.001);
+    }
+}
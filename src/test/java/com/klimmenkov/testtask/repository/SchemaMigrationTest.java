@@ -0,0 +1,38 @@
+package com.klimmenkov.testtask.repository;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfoService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+
+// The prod profile never compares the migrations with the entities, this test does: Flyway builds the
+// schema on an embedded database in MySQL mode, and Hibernate only starts if every mapped table and
+// column is there with a matching type.
+@RunWith(SpringRunner.class)
+@ActiveProfiles("prod")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrations;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+public class SchemaMigrationTest {
+
+    @Autowired
+    private Flyway flyway;
+
+    // Reaching the test at all means Hibernate validated the schema
+    @Test
+    public void testMigrationsMatchTheEntities() {
+        MigrationInfoService info = flyway.info();
+
+        assertEquals(0, info.pending().length);
+        assertEquals(info.all()[info.all().length - 1].getVersion(), info.current().getVersion());
+    }
+}
@@ -0,0 +1,175 @@
+package com.klimmenkov.testtask.repository;
+
+import com.klimmenkov.testtask.model.User;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+// The users are committed once for the whole class, the database is discarded afterwards
+@DirtiesContext
+public class UserRepositoryTest {
+
+    private static final int USERS = 100_000;
+
+    private static final int USERS_PER_DAY = 10;
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int SAMPLED_PAGES = 200;
+
+    private static final long BASE_DATE = 0L;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static User[] fixture;
+
+    private User[] users() {
+        if (fixture == null) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            fixture = transaction.execute(status -> persistUsers());
+        }
+        return fixture;
+    }
+
+    private User[] persistUsers() {
+        User[] persisted = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            Date birthDate = new Date(BASE_DATE + TimeUnit.DAYS.toMillis(i / USERS_PER_DAY));
+            User user = new User("user" + i + "@example.com", "First" + i, "Last" + i, birthDate, "Address", "0500000000");
+            entityManager.persist(user);
+            persisted[i] = user;
+            if (i % 1000 == 999) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return persisted;
+    }
+
+    @Test
+    public void testKeysetPagesFollowBirthDateAndIdOrder() {
+        User[] users = users();
+        Date toDate = users[USERS - 1].getBirthDate();
+        User last = users[PAGE_SIZE - 1];
+
+        List<User> secondPage = userRepository.findPageAfter(last.getBirthDate(), last.getId(), toDate,
+                PageRequest.of(0, PAGE_SIZE));
+
+        assertEquals(PAGE_SIZE, secondPage.size());
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            assertEquals(users[PAGE_SIZE + i].getId(), secondPage.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testProjectedPagesSelectRequestedFieldsAndKeyset() {
+        User[] users = users();
+        Date toDate = users[USERS - 1].getBirthDate();
+        User last = users[PAGE_SIZE - 1];
+
+        List<Map<String, Object>> secondPage = userRepository.findFieldsPageAfter(List.of("email"),
+                last.getBirthDate(), last.getId(), toDate, PAGE_SIZE);
+
+        assertEquals(PAGE_SIZE, secondPage.size());
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Map<String, Object> row = secondPage.get(i);
+            assertEquals(List.of("email", "id", "birthDate"), List.copyOf(row.keySet()));
+            assertEquals(users[PAGE_SIZE + i].getId(), row.get("id"));
+            assertEquals(users[PAGE_SIZE + i].getEmail(), row.get("email"));
+        }
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    public void testCompositeBirthDateIndexIsCreated() {
+        Number indexes = (Number) entityManager.createNativeQuery(
+                        "select count(*) from information_schema.indexes " +
+                                "where upper(index_name) = 'IDX_USERS_BIRTH_DATE_ID'")
+                .getSingleResult();
+
+        assertTrue(indexes.intValue() > 0);
+    }
+
+    @Test
+    public void testDuplicateEmailIsTheOnlyViolationTakenForOne() {
+        userRepository.saveAndFlush(new User("taken@example.com", "First", "Last", new Date(BASE_DATE), null, null));
+        DataIntegrityViolationException duplicate = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(new User("taken@example.com", "Other", "Last", new Date(BASE_DATE), null, null)));
+        assertTrue(UserConstraints.isDuplicateEmail(duplicate));
+    }
+
+    @Test
+    public void testOtherViolationsAreNotTakenForADuplicateEmail() {
+        String tooLong = "x".repeat(300);
+        DataIntegrityViolationException violation = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(new User("long@example.com", tooLong, "Last", new Date(BASE_DATE), null, null)));
+        assertFalse(UserConstraints.isDuplicateEmail(violation));
+    }
+
+    @Test
+    public void testPageLatencyStaysFlatFromFirstToLastPage() {
+        int lastPage = USERS / PAGE_SIZE;
+
+        measurePages(1, SAMPLED_PAGES);
+        long firstPages = measurePages(1, SAMPLED_PAGES);
+        long deepPages = measurePages(lastPage - SAMPLED_PAGES + 1, lastPage);
+
+        assertTrue("Deep pages took " + deepPages + "ns, first pages took " + firstPages + "ns",
+                deepPages <= firstPages * 3 + TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private long measurePages(int fromPage, int toPage) {
+        User[] users = users();
+        Date toDate = users[USERS - 1].getBirthDate();
+        long[] latencies = new long[toPage - fromPage + 1];
+
+        for (int page = fromPage; page <= toPage; page++) {
+            Date afterBirthDate = page == 1 ? new Date(BASE_DATE) : users[(page - 1) * PAGE_SIZE - 1].getBirthDate();
+            Long afterId = page == 1 ? Long.MIN_VALUE : users[(page - 1) * PAGE_SIZE - 1].getId();
+
+            long start = System.nanoTime();
+            List<User> result = userRepository.findPageAfter(afterBirthDate, afterId, toDate,
+                    PageRequest.of(0, PAGE_SIZE));
+            latencies[page - fromPage] = System.nanoTime() - start;
+
+            assertEquals(users[(page - 1) * PAGE_SIZE].getId(), result.get(0).getId());
+            entityManager.clear();
+        }
+
+        Arrays.sort(latencies);
+        return latencies[latencies.length / 2];
+    }
+}
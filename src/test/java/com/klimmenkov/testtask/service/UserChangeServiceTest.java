@@ -0,0 +1,102 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserChange;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+// An embedded database, polled often, so that a stalled subscriber is noticed within the test
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "user.changes.gapTimeout=0s",
+        "user.changes.pollInterval=50ms",
+        "user.changes.stallTimeout=1s"
+})
+public class UserChangeServiceTest {
+
+    @Autowired
+    private UserChangeService userChangeService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void testStalledSubscriberHoldsUpNoOneAndIsDropped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<RuntimeException> stalledFailures = new LinkedBlockingQueue<>();
+        Runnable cancelStalled = userChangeService.subscribe(0, 0, new UserChangeSubscriber() {
+            @Override
+            public boolean deliver(List<UserChange> changes) {
+                try {
+                    // A client that stopped reading, its send never returns on its own
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+
+            @Override
+            public void failed(RuntimeException e) {
+                stalledFailures.add(e);
+            }
+        });
+        BlockingQueue<UserChange> received = new LinkedBlockingQueue<>();
+        Runnable cancelFollowing = userChangeService.subscribe(0, 0, new UserChangeSubscriber() {
+            @Override
+            public boolean deliver(List<UserChange> changes) {
+                received.addAll(changes);
+                return true;
+            }
+
+            @Override
+            public void failed(RuntimeException e) {
+            }
+        });
+
+        try {
+            long first = userService.createUser(user("first.stall@gmail.com")).getId();
+            assertEquals(first, awaitChangeOf(received, first).getUserId().longValue());
+
+            long second = userService.createUser(user("second.stall@gmail.com")).getId();
+            assertEquals(second, awaitChangeOf(received, second).getUserId().longValue());
+
+            assertNotNull("The stalled subscriber was not dropped", stalledFailures.poll(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            cancelStalled.run();
+            cancelFollowing.run();
+        }
+    }
+
+    private static UserChange awaitChangeOf(BlockingQueue<UserChange> received, long userId) throws InterruptedException {
+        while (true) {
+            UserChange change = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull("No change delivered for user " + userId, change);
+            if (change.getUserId() == userId) {
+                return change;
+            }
+        }
+    }
+
+    private static User user(String email) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1990, Calendar.MAY, 5);
+        return new User(email, "Change", "Feed", calendar.getTime(), "1 Feed St", "0501112233");
+    }
+}
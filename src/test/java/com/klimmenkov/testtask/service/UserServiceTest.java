@@ -0,0 +1,67 @@
+package com.klimmenkov.testtask.service;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.repository.UserRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+// An embedded database with the birth date index on
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userService;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "user.index.birthDate.enabled=true"
+})
+public class UserServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void testIndexPagesStayFullWhenListedUsersAreGone() {
+        List<Long> ids = new ArrayList<>();
+        for (int day = 1; day <= 6; day++) {
+            ids.add(userService.createUser(user("gone" + day + "@gmail.com", birthDate(day))).getId());
+        }
+        // A delete the index has not heard of yet, as between a commit and its after-commit update
+        userRepository.deleteAllByIdInBatch(List.of(ids.get(1), ids.get(2)));
+
+        Date fromDate = birthDate(1);
+        Date toDate = birthDate(6);
+        List<User> firstPage = userService.searchUsersByBirthDateRange(fromDate, toDate, null, 2);
+        List<User> secondPage = userService.searchUsersByBirthDateRange(fromDate, toDate,
+                UserCursor.after(firstPage.get(1)), 2);
+        List<Map<String, Object>> fieldsPage = userService.searchUserFieldsByBirthDateRange(fromDate, toDate,
+                null, 2, List.of("id", "birthDate", "email"));
+
+        assertEquals(List.of(ids.get(0), ids.get(3)), firstPage.stream().map(User::getId).toList());
+        assertEquals(List.of(ids.get(4), ids.get(5)), secondPage.stream().map(User::getId).toList());
+        assertEquals(List.of(ids.get(0), ids.get(3)), fieldsPage.stream().map(row -> row.get("id")).toList());
+    }
+
+    private static Date birthDate(int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1970, Calendar.MARCH, day);
+        return calendar.getTime();
+    }
+
+    private static User user(String email, Date birthDate) {
+        return new User(email, "Paged", "Index", birthDate, "1 Index St", "0501112233");
+    }
+}
@@ -0,0 +1,160 @@
+package com.klimmenkov.testtask.shard;
+
+import com.klimmenkov.testtask.dto.BatchCreateResult;
+import com.klimmenkov.testtask.exception.DuplicateEmailException;
+import com.klimmenkov.testtask.exception.UserNotFoundException;
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.service.UserService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Three embedded databases as shards
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "user.shards.urls=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "user.shards.username=sa",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class ShardedUserServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserShards userShards;
+
+    @Test
+    public void testUsersLiveOnTheShardOfTheirEmail() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            users.add(user("placed" + i + "@gmail.com", birthDate(1960, i)));
+        }
+        users.add(user("placed0@gmail.com", birthDate(1960, 0)));
+        BatchCreateResult result = userService.createUsers(users);
+
+        assertEquals(30, result.getCreated());
+        assertEquals(1, result.getFailed());
+        assertFalse(result.getItems().get(30).isCreated());
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            long id = result.getItems().get(i).getId();
+            int shard = userShards.shardFor(users.get(i).getEmail());
+            usedShards.add(shard);
+            assertEquals(shard, userShards.shardOf(id));
+            assertEquals(users.get(i).getEmail(), userService.getUser(id).getEmail());
+            for (int other = 0; other < userShards.count(); other++) {
+                assertEquals(other == shard, userShards.call(other, () -> userRepository.existsById(id)));
+            }
+        }
+        assertTrue(usedShards.size() > 1);
+    }
+
+    @Test
+    public void testBirthDateSearchMergesAllShardsInOrder() {
+        for (int i = 0; i < 20; i++) {
+            userService.createUser(user("merged" + i + "@gmail.com", birthDate(1950, i % 7)));
+        }
+        Date fromDate = birthDate(1950, 0);
+        Date toDate = birthDate(1950, 6);
+
+        List<User> all = userService.searchUsersByBirthDateRange(fromDate, toDate);
+        List<User> expected = new ArrayList<>(all);
+        expected.sort(Comparator.comparing((User user) -> user.getBirthDate().getTime()).thenComparing(User::getId));
+        assertEquals(20, all.size());
+        assertEquals(ids(expected), ids(all));
+
+        List<User> paged = new ArrayList<>();
+        UserCursor after = null;
+        while (true) {
+            List<User> page = userService.searchUsersByBirthDateRange(fromDate, toDate, after, 3);
+            paged.addAll(page);
+            if (page.size() < 3) {
+                break;
+            }
+            after = UserCursor.after(page.get(page.size() - 1));
+        }
+        assertEquals(ids(expected), ids(paged));
+
+        List<Map<String, Object>> rows =
+                userService.searchUserFieldsByBirthDateRange(fromDate, toDate, List.of("email"));
+        assertEquals(20, rows.size());
+        assertEquals(Set.of("email"), rows.get(0).keySet());
+        assertEquals(expected.get(0).getEmail(), rows.get(0).get("email"));
+    }
+
+    @Test
+    public void testUpdatesAndDeletesFollowTheId() {
+        User created = userService.createUser(user("moving@gmail.com", birthDate(1970, 1)));
+        User other = userService.createUser(user("staying@gmail.com", birthDate(1970, 2)));
+
+        userService.partiallyUpdateUser(created.getId(), Map.of("email", "moved@gmail.com"), null);
+        assertEquals(created.getId(), userService.getUserByEmail("moved@gmail.com").getId());
+        assertEquals(userShards.shardFor("moving@gmail.com"), userShards.shardOf(created.getId()));
+
+        // Taken on whichever shard holds it, not only on the shard the email hashes to
+        try {
+            userService.createUser(user("moved@gmail.com", birthDate(1970, 3)));
+            fail("The email is already registered");
+        } catch (DuplicateEmailException e) {
+            // expected
+        }
+        try {
+            userService.partiallyUpdateUser(other.getId(), Map.of("email", "moved@gmail.com"), null);
+            fail("The email is already registered");
+        } catch (DuplicateEmailException e) {
+            // expected
+        }
+
+        userService.deleteUser(created.getId());
+        try {
+            userService.getUser(created.getId());
+            fail("The user is deleted");
+        } catch (UserNotFoundException e) {
+            // expected
+        }
+        userService.deleteUser(other.getId());
+    }
+
+    @Test(expected = UserNotFoundException.class)
+    public void testIdOfUnknownShardIsNotFound() {
+        userService.getUser(UserShards.encode(UserShards.MAX_SHARDS - 1, 1));
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private static User user(String email, Date birthDate) {
+        return new User(email, "Shard", "User", birthDate, "1 Shard St", "0501112233");
+    }
+
+    private static Date birthDate(int year, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1 + day);
+        return calendar.getTime();
+    }
+}
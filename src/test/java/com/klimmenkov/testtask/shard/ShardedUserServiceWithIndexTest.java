@@ -0,0 +1,101 @@
+package com.klimmenkov.testtask.shard;
+
+import com.klimmenkov.testtask.model.User;
+import com.klimmenkov.testtask.model.UserCursor;
+import com.klimmenkov.testtask.repository.UserRepository;
+import com.klimmenkov.testtask.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The cases of ShardedUserServiceTest again, with the birth date index holding the ids of all shards.
+// Changes are polled rarely, so that the statements counted are the page's own.
+@SpringBootTest(properties = {
+        "user.shards.urls=jdbc:h2:mem:indexedShard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:indexedShard1;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:indexedShard2;DB_CLOSE_DELAY=-1",
+        "user.shards.username=sa",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "user.index.birthDate.enabled=true",
+        "user.changes.pollInterval=1h"
+})
+public class ShardedUserServiceWithIndexTest extends ShardedUserServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserShards userShards;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testIndexPagesLoadEachShardOnce() {
+        List<User> created = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            created.add(userService.createUser(user("indexed" + i + "@gmail.com", birthDate(i % 10))));
+        }
+        // Deleted behind the index's back, as between a delete's commit and the index hearing of it
+        User gone = created.remove(7);
+        userShards.run(userShards.shardOf(gone.getId()),
+                () -> userRepository.deleteAllByIdInBatch(List.of(gone.getId())));
+        created.sort(Comparator.comparing((User user) -> user.getBirthDate().getTime()).thenComparing(User::getId));
+        List<Long> expected = created.stream().map(User::getId).toList();
+        Date fromDate = birthDate(0);
+        Date toDate = birthDate(9);
+
+        List<Long> paged = new ArrayList<>();
+        List<Long> pagedRows = new ArrayList<>();
+        UserCursor after = null;
+        UserCursor rowsAfter = null;
+        while (true) {
+            List<User> page = userService.searchUsersByBirthDateRange(fromDate, toDate, after, 4);
+            List<Map<String, Object>> rows =
+                    userService.searchUserFieldsByBirthDateRange(fromDate, toDate, rowsAfter, 4, List.of("email"));
+            page.forEach(user -> paged.add(user.getId()));
+            rows.forEach(row -> pagedRows.add((Long) row.get("id")));
+            if (page.size() < 4) {
+                break;
+            }
+            after = UserCursor.after(page.get(3));
+            rowsAfter = new UserCursor((Date) rows.get(3).get("birthDate"), (Long) rows.get(3).get("id"));
+        }
+        assertEquals(expected, paged);
+        assertEquals(expected, pagedRows);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertEquals(expected.subList(0, 20), userService.searchUsersByBirthDateRange(fromDate, toDate, null, 20)
+                .stream().map(User::getId).toList());
+        assertTrue("One lookup per shard, " + statistics.getPrepareStatementCount() + " statements ran",
+                statistics.getPrepareStatementCount() <= userShards.count());
+    }
+
+    private static User user(String email, Date birthDate) {
+        return new User(email, "Indexed", "User", birthDate, "1 Index St", "0501112233");
+    }
+
+    private static Date birthDate(int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1940, Calendar.JANUARY, 1 + day);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,67 @@
+package com.klimmenkov.testtask.shard;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserShardsTest {
+
+    private final UserShards userShards = new UserShards(4);
+
+    @After
+    public void tearDown() {
+        userShards.shutdown();
+    }
+
+    @Test
+    public void testIdsKeepTheirShard() {
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            long id = UserShards.encode(shard, 123_456_789L);
+            assertEquals(shard, userShards.shardOf(id));
+            assertTrue(id < 1L << 53);
+        }
+        // Shard 0 ids are the ids of an unsharded database
+        assertEquals(42L, UserShards.encode(0, 42L));
+        assertEquals(0, new UserShards(1).shardOf(42L));
+    }
+
+    @Test
+    public void testIdsOfUnknownShardsAreRejected() {
+        assertEquals(-1, userShards.shardOf(UserShards.encode(4, 1)));
+        assertEquals(-1, userShards.shardOf(-1L));
+    }
+
+    @Test
+    public void testEmailsSpreadOverAllShardsIgnoringCase() {
+        int[] users = new int[userShards.count()];
+        for (int i = 0; i < 10_000; i++) {
+            users[userShards.shardFor("user" + i + "@gmail.com")]++;
+        }
+        for (int count : users) {
+            assertTrue(count > 2_000 && count < 3_000);
+        }
+        assertEquals(userShards.shardFor("Some.User@Gmail.com"), userShards.shardFor("some.user@gmail.com"));
+    }
+
+    @Test
+    public void testFanOutBindsEachShardAndKeepsTheOrder() {
+        List<Integer> shards = userShards.fanOut(shard -> ShardContext.current());
+
+        assertEquals(List.of(0, 1, 2, 3), shards);
+        assertEquals(List.of(3, 1), userShards.fanOut(List.of(3, 1), shard -> ShardContext.current()));
+        assertFalse(ShardContext.isBound());
+    }
+
+    @Test
+    public void testCallRestoresTheOuterShard() {
+        int inner = userShards.call(2, () -> userShards.call(3, ShardContext::current) + ShardContext.current());
+
+        assertEquals(5, inner);
+        assertFalse(ShardContext.isBound());
+    }
+}
@@ -0,0 +1,68 @@
+package com.klimmenkov.testtask.validator;
+
+import com.klimmenkov.testtask.model.User;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UserValidatorTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final UserValidator userValidator = new UserValidator(validator, new AgeCutoff(18));
+
+    @Test
+    public void testValidUserHasNoErrors() {
+        assertTrue(userValidator.errorMessages(user("john.doe@example.com", LocalDate.of(1990, 1, 1))).isEmpty());
+    }
+
+    @Test
+    public void testEmailChecksMatchBeanValidation() {
+        String[] emails = {"a@b", "a.b@c.d", "a..b@c.d", ".a@b.c", "a.@b.c", "a@-b.c", "a@b-.c", "a@b..c",
+                "a@b.c.", "a@", "@b", "ab", "a@b@c", "A_B+x@EX.com", "a b@c.d", "\"a b\"@c.d", "a@[127.0.0.1]",
+                "\u00fc@b.c", "a@b\u00fc.c", "a@b--c.d", "a@" + "x".repeat(64) + ".com", "x".repeat(65) + "@b.c", " "};
+        for (String email : emails) {
+            User user = user(email, LocalDate.of(1990, 1, 1));
+            assertEquals(email, messages(validator.validate(user)), new HashSet<>(userValidator.errorMessages(user)));
+        }
+    }
+
+    @Test
+    public void testAgeChecksMatchBeanValidation() {
+        LocalDate today = LocalDate.now();
+        LocalDate[] birthDates = {today.minusYears(18), today.minusYears(18).plusDays(1),
+                today.minusYears(18).minusDays(1), today, today.plusDays(1), LocalDate.of(2000, 2, 29)};
+        for (LocalDate birthDate : birthDates) {
+            User user = user("a@b.c", birthDate);
+            assertEquals(birthDate.toString(), messages(validator.validate(user)),
+                    new HashSet<>(userValidator.errorMessages(user)));
+        }
+    }
+
+    @Test
+    public void testMissingFieldsAreReported() {
+        User user = new User(null, " ", null, null, null, null);
+
+        assertEquals(messages(validator.validate(user)), new HashSet<>(userValidator.errorMessages(user)));
+    }
+
+    private static Set<String> messages(Set<ConstraintViolation<User>> violations) {
+        return violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.toSet());
+    }
+
+    private static User user(String email, LocalDate birthDate) {
+        Date date = Date.from(birthDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return new User(email, "John", "Doe", date, null, null);
+    }
+}